@@ -0,0 +1,189 @@
+package com.azlirynz.advancedkeyboard.suggestions;
+
+import static org.junit.Assert.assertTrue;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Bundle;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.azlirynz.advancedkeyboard.R;
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.LanguageModel;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.Suggester;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+import com.azlirynz.advancedkeyboard.metrics.LatencyHistogram;
+import com.azlirynz.advancedkeyboard.metrics.Metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Types a text a letter at a time against the bundled English words and pushes each
+ * keystroke's suggestions through {@link SuggestionAdapter#submitList}, as the service
+ * does, then lays out and draws the strip once per keystroke.
+ *
+ * The strip is not attached to a window, since the app has no activity to host it, so a
+ * frame here is the main-thread measure, layout and software draw that follows each
+ * update, without the render thread. Bind times are the adapter's own
+ * {@link Metrics.Stage#UI_BIND} records. Both are logged and reported as instrumentation
+ * status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SuggestionStripTimingTest {
+    private static final String TAG = "SuggestionStripTiming";
+    private static final String TEXT = "the quick brown fox jumps over the lazy dog and then "
+            + "we should probably meet again tomorrow morning before everyone else arrives";
+    private static final int REPEATS = 5;
+
+    private Instrumentation instrumentation;
+    private Suggester suggester;
+    private RecyclerView strip;
+    private SuggestionAdapter adapter;
+    private Canvas canvas;
+    private int widthSpec;
+    private int heightSpec;
+
+    @Before
+    public void setUp() throws Exception {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = new ContextThemeWrapper(instrumentation.getTargetContext(),
+                R.style.Theme_AdvancedKeyboard);
+        WordList words;
+        try (Reader reader = new InputStreamReader(
+                context.getAssets().open("dictionaries/en/" + LanguageModel.WORDS_SOURCE),
+                StandardCharsets.UTF_8)) {
+            words = WordList.parse(reader);
+        }
+        suggester = new Suggester();
+        suggester.setLanguageModels(new LanguageModel("en", PackedTrie.build(words), null), null);
+
+        int width = context.getResources().getDisplayMetrics().widthPixels;
+        int height = Math.round(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 40,
+                context.getResources().getDisplayMetrics()));
+        widthSpec = View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY);
+        heightSpec = View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY);
+        canvas = new Canvas(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+        instrumentation.runOnMainSync(() -> {
+            strip = new RecyclerView(context);
+            strip.setLayoutManager(new LinearLayoutManager(context, LinearLayoutManager.HORIZONTAL, false));
+            // Animations only run in a window; without one, removed rows would linger.
+            strip.setItemAnimator(null);
+            adapter = new SuggestionAdapter(word -> { });
+            strip.setAdapter(adapter);
+        });
+        Metrics.reset();
+        Metrics.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    public void keystrokeUpdatesRebindOnlyChangedRows() throws Exception {
+        LatencyHistogram frames = new LatencyHistogram();
+        long rows = 0;
+        int keystrokes = 0;
+        for (int repeat = 0; repeat < REPEATS; repeat++) {
+            // The first pass warms up; only the rest are measured.
+            if (repeat == 1) {
+                Metrics.reset();
+                frames.reset();
+                rows = 0;
+                keystrokes = 0;
+            }
+            String previousWord = "";
+            StringBuilder typed = new StringBuilder();
+            for (int i = 0; i <= TEXT.length(); i++) {
+                char c = i < TEXT.length() ? TEXT.charAt(i) : ' ';
+                if (c == ' ') {
+                    previousWord = typed.toString();
+                    typed.setLength(0);
+                } else {
+                    typed.append(c);
+                }
+                List<SuggestionItem> items = suggest(previousWord, typed.toString());
+                submit(items);
+                frames.record(drawFrame());
+                rows += items.size();
+                keystrokes++;
+            }
+        }
+
+        LatencyHistogram binds = Metrics.get(Metrics.Stage.UI_BIND);
+        String report = String.format(Locale.ROOT,
+                "%d keystrokes, %d rows submitted, %d bound%n"
+                        + "bind  p50 %.3f ms, p99 %.3f ms, max %.3f ms%n"
+                        + "frame p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                keystrokes, rows, binds.count(),
+                millis(binds.percentile(50)), millis(binds.percentile(99)), millis(binds.max()),
+                millis(frames.percentile(50)), millis(frames.percentile(99)), millis(frames.max()));
+        Log.i(TAG, report);
+        Bundle status = new Bundle();
+        status.putString(Instrumentation.REPORT_KEY_STREAMRESULT, report + "\n");
+        instrumentation.sendStatus(0, status);
+
+        // Rows that stay across a keystroke keep their binding.
+        assertTrue(report, binds.count() < rows);
+    }
+
+    // Looks up suggestions off the main thread, as the background worker does.
+    private List<SuggestionItem> suggest(String previousWord, String typedWord) {
+        List<String> words = suggester.getSuggestions(null, previousWord, typedWord, Cancellation.NONE);
+        boolean isPrediction = typedWord.isEmpty();
+        List<SuggestionItem> items = new ArrayList<>(words.size());
+        for (String word : words) {
+            items.add(new SuggestionItem(word, isPrediction));
+        }
+        return items;
+    }
+
+    // Submits a list and waits until its diff has been applied on the main thread.
+    private void submit(List<SuggestionItem> items) throws InterruptedException {
+        CountDownLatch committed = new CountDownLatch(1);
+        instrumentation.runOnMainSync(() -> adapter.submitList(items, committed::countDown));
+        assertTrue("diff not applied", committed.await(5, TimeUnit.SECONDS));
+    }
+
+    // Returns how long the main thread spends laying out and drawing the strip.
+    private long drawFrame() {
+        long[] elapsed = new long[1];
+        instrumentation.runOnMainSync(() -> {
+            long start = System.nanoTime();
+            strip.measure(widthSpec, heightSpec);
+            strip.layout(0, 0, strip.getMeasuredWidth(), strip.getMeasuredHeight());
+            strip.draw(canvas);
+            elapsed[0] = System.nanoTime() - start;
+        });
+        return elapsed[0];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
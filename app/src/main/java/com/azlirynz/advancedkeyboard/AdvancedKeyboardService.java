@@ -1,65 +1,135 @@
 package com.azlirynz.advancedkeyboard;
 
 import android.inputmethodservice.InputMethodService;
-import android.inputmethodservice.Keyboard;
-import android.inputmethodservice.KeyboardView;
+import android.os.Trace;
+import android.text.InputType;
 import android.view.KeyEvent;
 import android.view.View;
+import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputConnection;
-import android.text.TextUtils;
 import android.util.Log;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 
 import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
-import androidx.viewpager.widget.ViewPager;
+import androidx.viewpager2.widget.ViewPager2;
 
 import com.azlirynz.advancedkeyboard.databinding.KeyboardLayoutBinding;
 import com.azlirynz.advancedkeyboard.R;
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
 import com.azlirynz.advancedkeyboard.dictionary.Dictionary;
+import com.azlirynz.advancedkeyboard.dictionary.GestureDecoder;
+import com.azlirynz.advancedkeyboard.dictionary.GesturePath;
+import com.azlirynz.advancedkeyboard.dictionary.KeyProximity;
+import com.azlirynz.advancedkeyboard.dictionary.UserDictionary;
 import com.azlirynz.advancedkeyboard.dictionary.WordComposer;
 import com.azlirynz.advancedkeyboard.emoji.EmojiAdapter;
+import com.azlirynz.advancedkeyboard.emoji.EmojiGlyphCache;
 import com.azlirynz.advancedkeyboard.emoji.EmojiManager;
+import com.azlirynz.advancedkeyboard.emoji.RecentEmojis;
+import com.azlirynz.advancedkeyboard.gesture.GestureTracker;
+import com.azlirynz.advancedkeyboard.keyboard.KeyboardLayout;
+import com.azlirynz.advancedkeyboard.keyboard.KeysView;
+import com.azlirynz.advancedkeyboard.metrics.MemoryFootprint;
+import com.azlirynz.advancedkeyboard.metrics.Metrics;
+import com.azlirynz.advancedkeyboard.suggestions.BackgroundSuggestionScheduler;
 import com.azlirynz.advancedkeyboard.suggestions.SuggestionAdapter;
+import com.azlirynz.advancedkeyboard.suggestions.SuggestionItem;
+import com.azlirynz.advancedkeyboard.suggestions.SuggestionScheduler;
+import com.azlirynz.advancedkeyboard.trace.TypingTraceRecorder;
 import com.google.android.material.tabs.TabLayout;
+import com.google.android.material.tabs.TabLayoutMediator;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.Executors;
 
 public class AdvancedKeyboardService extends InputMethodService 
-    implements KeyboardView.OnKeyboardActionListener,
+    implements KeysView.Listener,
     SuggestionAdapter.OnSuggestionClickListener,
+    SuggestionScheduler.Callback,
     EmojiAdapter.OnEmojiClickListener {
 
     private static final String TAG = "AdvancedKeyboard";
+    // Stage timings are kept when this tag is loggable at DEBUG.
+    private static final String METRICS_TAG = "AKMetrics";
+    // Typing is recorded for replay when this tag is loggable at DEBUG.
+    private static final String TRACE_TAG = "AKTrace";
     private KeyboardLayoutBinding binding;
     private View emojiView;
-    private Keyboard qwertyKeyboard;
-    private Keyboard symbolsKeyboard;
-    private Keyboard currentKeyboard;
+    private EmojiAdapter emojiAdapter;
+    private EmojiGlyphCache emojiGlyphCache;
+    private List<String> recentEmojiPage = Collections.emptyList();
+    private KeyboardLayout qwertyKeyboard;
+    private KeyboardLayout symbolsKeyboard;
     private boolean capsLock = false;
     private boolean isEmojiKeyboard = false;
     private boolean isPredictionEnabled = true;
+    // Set for passwords and fields that ask for no suggestions: nothing typed there is
+    // composed, suggested against or learned.
+    private boolean noLearning;
     
     private final WordComposer wordComposer = new WordComposer();
     private Dictionary dictionary;
+    private UserDictionary userDictionary;
     private EmojiManager emojiManager;
-    private final List<String> suggestions = new ArrayList<>();
+    private RecentEmojis recentEmojis;
     private SuggestionAdapter suggestionAdapter;
+    private SuggestionScheduler suggestionScheduler;
+    private GestureTracker gestureTracker;
+    // Null unless typing is being recorded.
+    private TypingTraceRecorder traceRecorder;
+    // Set while the newest request is for a gesture, whose best word gets composed.
+    private boolean awaitingGesture;
+    // When the newest suggestion request was made, while metrics are enabled.
+    private long suggestionsRequestedAt;
+    // The last two committed words, lower-cased, for next-word prediction.
+    private String lastWord = "";
+    private String wordBeforeLast = "";
+    private String currentLocale;
+    // The editor's selection as last reported, so no key has to ask for it.
+    private int selectionStart = -1;
+    private int selectionEnd = -1;
     
     private static final int KEYCODE_EMOJI = -100;
     private static final int KEYCODE_LANGUAGE_SWITCH = -101;
+    // Emoji offered after the word suggestions, and for a typed :shortcode.
+    private static final int MAX_EMOJI_SUGGESTIONS = 2;
+    private static final int MAX_SHORTCODE_SUGGESTIONS = 8;
 
     @Override
     public void onCreate() {
         super.onCreate();
+        enableMetrics();
+        long start = Metrics.begin(Metrics.Stage.SERVICE_CREATE);
         dictionary = new Dictionary(this);
+        userDictionary = new UserDictionary(new File(getFilesDir(), "user_dictionary"));
+        userDictionary.load();
+        dictionary.setUserDictionary(userDictionary);
         emojiManager = new EmojiManager(this);
+        recentEmojis = new RecentEmojis(getFilesDir());
+        recentEmojis.load();
+        // Pulled with "adb shell run-as com.azlirynz.advancedkeyboard ls files/traces".
+        if (Log.isLoggable(TRACE_TAG, Log.DEBUG)) {
+            traceRecorder = new TypingTraceRecorder(new File(getFilesDir(), "traces"));
+        }
+        suggestionScheduler = new BackgroundSuggestionScheduler(
+            this::lookUpSuggestions, this,
+            Executors.newSingleThreadExecutor(), ContextCompat.getMainExecutor(this));
         
+        // Lookups work against whatever part of the dictionary has been published so far.
+        currentLocale = dictionary.getDefaultLocale();
+        dictionary.setActiveLocales(currentLocale, null);
         new Thread(() -> {
-            dictionary.load();
+            long loadStart = Metrics.begin(Metrics.Stage.EMOJI_LOAD);
             emojiManager.load();
+            Metrics.end(Metrics.Stage.EMOJI_LOAD, loadStart);
             View decorView = getWindow().getWindow().getDecorView();
             decorView.post(() -> {
                 if (binding != null) {
@@ -67,56 +137,238 @@ public class AdvancedKeyboardService extends InputMethodService
                 }
             });
         }).start();
+        Metrics.end(Metrics.Stage.SERVICE_CREATE, start);
+    }
+
+    // Turned on with "adb shell setprop log.tag.AKMetrics DEBUG" before the keyboard starts;
+    // the timings are printed by "adb shell dumpsys input_method".
+    private static void enableMetrics() {
+        if (!Log.isLoggable(METRICS_TAG, Log.DEBUG)) return;
+        Metrics.setTracer(new Metrics.Tracer() {
+            @Override
+            public void beginSection(String name) {
+                Trace.beginSection(name);
+            }
+
+            @Override
+            public void endSection() {
+                Trace.endSection();
+            }
+        });
+        Metrics.setEnabled(true);
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter fout, String[] args) {
+        super.dump(fd, fout, args);
+        fout.println("Memory (bytes):");
+        fout.print(getMemoryFootprint());
+        if (!Metrics.isEnabled()) return;
+        fout.println("Typing latency (ms):");
+        fout.print(Metrics.dump());
+    }
+
+    private MemoryFootprint getMemoryFootprint() {
+        MemoryFootprint footprint = new MemoryFootprint();
+        dictionary.addTo(footprint);
+        emojiManager.addTo(footprint);
+        if (emojiGlyphCache != null) {
+            footprint.add("emoji glyphs", emojiGlyphCache.sizeInBytes(), false);
+        }
+        if (binding != null) {
+            footprint.add("key layers", binding.keyboardView.getLayerBytes(), false);
+        }
+        return footprint;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        releaseMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        releaseMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    // Caches go first, then the full model of the secondary locale, then those of both;
+    // everything is rebuilt when next needed, and the hot tiers keep suggestions going.
+    private void releaseMemory(int level) {
+        if (emojiGlyphCache != null) {
+            emojiGlyphCache.clear();
+        }
+        emojiManager.releaseDecoded();
+        dictionary.releaseInactive();
+        // Layers may still be on screen until the keyboard is hidden.
+        if (level >= TRIM_MEMORY_UI_HIDDEN && binding != null) {
+            binding.keyboardView.releaseLayers();
+        }
+        if (level == TRIM_MEMORY_RUNNING_CRITICAL || level >= TRIM_MEMORY_MODERATE) {
+            dictionary.releaseColdTiers(true);
+        } else if (level == TRIM_MEMORY_RUNNING_LOW || level >= TRIM_MEMORY_BACKGROUND) {
+            dictionary.releaseColdTiers(false);
+        }
+        Log.d(TAG, "Released memory for trim level " + level);
+    }
+
+    @Override
+    public void onDestroy() {
+        dictionary.close();
+        suggestionScheduler.shutdown();
+        userDictionary.close();
+        recentEmojis.close();
+        super.onDestroy();
+    }
+
+    @Override
+    public void onStartInput(EditorInfo attribute, boolean restarting) {
+        super.onStartInput(attribute, restarting);
+        selectionStart = attribute.initialSelStart;
+        selectionEnd = attribute.initialSelEnd;
+        noLearning = isPrivate(attribute.inputType);
+        isPredictionEnabled = !noLearning;
+        if (traceRecorder != null) {
+            traceRecorder.startInput(attribute);
+        }
+        wordComposer.reset();
+        resetContext();
+        clearSuggestions();
+    }
+
+    private static boolean isPrivate(int inputType) {
+        if (TypingTraceRecorder.isPassword(inputType)) return true;
+        return (inputType & InputType.TYPE_MASK_CLASS) == InputType.TYPE_CLASS_TEXT
+                && (inputType & InputType.TYPE_TEXT_FLAG_NO_SUGGESTIONS) != 0;
+    }
+
+    @Override
+    public void onFinishInput() {
+        super.onFinishInput();
+        if (traceRecorder != null) {
+            traceRecorder.finishInput();
+        }
+        wordComposer.reset();
+        clearSuggestions();
+    }
+
+    @Override
+    public void onUpdateSelection(int oldSelStart, int oldSelEnd, int newSelStart, int newSelEnd,
+                                  int candidatesStart, int candidatesEnd) {
+        super.onUpdateSelection(oldSelStart, oldSelEnd, newSelStart, newSelEnd,
+                candidatesStart, candidatesEnd);
+        selectionStart = newSelStart;
+        selectionEnd = newSelEnd;
+        // Updates for our own edits leave the cursor at the end of the composing word, even
+        // when they arrive late; anything else means the user moved it.
+        if (wordComposer.size() > 0 && candidatesEnd != -1
+                && (newSelStart != candidatesEnd || newSelEnd != candidatesEnd)) {
+            InputConnection ic = getCurrentInputConnection();
+            if (ic != null) {
+                ic.finishComposingText();
+            }
+            if (traceRecorder != null) {
+                traceRecorder.reset();
+            }
+            wordComposer.reset();
+            resetContext();
+            clearSuggestions();
+        }
     }
 
     @Override
     public View onCreateInputView() {
+        long start = Metrics.begin(Metrics.Stage.INPUT_VIEW);
         binding = KeyboardLayoutBinding.inflate(getLayoutInflater());
         setupMainKeyboard();
         setupSuggestions();
+        Metrics.end(Metrics.Stage.INPUT_VIEW, start);
         return binding.getRoot();
     }
 
     private void setupMainKeyboard() {
-        qwertyKeyboard = new Keyboard(this, R.xml.qwerty);
-        symbolsKeyboard = new Keyboard(this, R.xml.number_symbols);
-        currentKeyboard = qwertyKeyboard;
-        
-        Keyboard.Row row = new Keyboard.Row(qwertyKeyboard);
-        row.defaultHeight = 50;
-        row.defaultWidth = 50;
-        
-        Keyboard.Key emojiKey = new Keyboard.Key(row);
-        emojiKey.icon = ContextCompat.getDrawable(this, R.drawable.ic_emoji);
-        emojiKey.codes = new int[]{KEYCODE_EMOJI};
-        emojiKey.label = "😀";
-        qwertyKeyboard.getKeys().add(emojiKey);
+        qwertyKeyboard = KeyboardLayout.inflate(getResources(), R.xml.qwerty);
+        symbolsKeyboard = KeyboardLayout.inflate(getResources(), R.xml.number_symbols);
+        setKeyGeometry(qwertyKeyboard);
+
+        binding.keyboardView.setListener(this);
+        binding.keyboardView.setKeyboard(qwertyKeyboard);
+
+        // A touch that travels further than a key is glide typing rather than a tap.
+        gestureTracker = new GestureTracker(qwertyKeyboard.getKeyWidth(0), this::onGesture);
+        binding.keyboardView.setOnTouchListener(gestureTracker);
+    }
 
-        binding.keyboardView.setKeyboard(currentKeyboard);
-        binding.keyboardView.setOnKeyboardActionListener(this);
-        binding.keyboardView.setPreviewEnabled(false);
+    @Override
+    public void onKeyboardLayout(KeyboardLayout layout) {
+        if (layout == qwertyKeyboard) {
+            setKeyGeometry(layout);
+        }
+    }
+
+    // Typo costs and gesture decoding both work from where the keys are.
+    private void setKeyGeometry(KeyboardLayout keyboard) {
+        int count = keyboard.getKeyCount();
+        int[] codes = new int[count];
+        int[] x = new int[count];
+        int[] y = new int[count];
+        int[] width = new int[count];
+        int[] height = new int[count];
+        for (int i = 0; i < count; i++) {
+            codes[i] = keyboard.getCode(i);
+            x[i] = keyboard.getX(i);
+            y[i] = keyboard.getY(i);
+            width[i] = keyboard.getKeyWidth(i);
+            height[i] = keyboard.getKeyHeight(i);
+        }
+        dictionary.setKeyProximity(KeyProximity.fromKeys(codes, x, y, width, height));
+        dictionary.setGestureDecoder(GestureDecoder.fromKeys(codes, x, y, width, height));
     }
 
     private void setupEmojiKeyboard() {
         if (emojiView == null) {
             emojiView = getLayoutInflater().inflate(R.layout.emoji_keyboard, null);
+            emojiGlyphCache = new EmojiGlyphCache(getResources().getDimension(R.dimen.emoji_glyph_size));
             
-            ViewPager emojiViewPager = emojiView.findViewById(R.id.emojiViewPager);
+            ViewPager2 emojiViewPager = emojiView.findViewById(R.id.emojiViewPager);
             TabLayout emojiCategories = emojiView.findViewById(R.id.emojiCategories);
             
-            List<List<String>> emojiPages = new ArrayList<>();
-            for (EmojiManager.EmojiCategory category : emojiManager.getCategories()) {
-                emojiPages.add(category.getEmojis());
-            }
-            
-            EmojiAdapter emojiAdapter = new EmojiAdapter(emojiPages, this);
+            emojiAdapter = new EmojiAdapter(new EmojiAdapter.Pages() {
+                // Page 0 holds the recent emojis, the rest the catalog's categories.
+                @Override
+                public int getPageCount() {
+                    return 1 + emojiManager.getCategoryCount();
+                }
+
+                @Override
+                public String getTitle(int page) {
+                    return page == 0 ? getString(R.string.emoji_category_recent)
+                            : emojiManager.getCategoryName(page - 1);
+                }
+
+                @Override
+                public List<String> getEmojis(int page) {
+                    return page == 0 ? recentEmojiPage : emojiManager.getEmojisForCategory(page - 1);
+                }
+            }, emojiGlyphCache, this);
+            // Lays out the neighbouring pages ahead of a swipe.
+            emojiViewPager.setOffscreenPageLimit(1);
             emojiViewPager.setAdapter(emojiAdapter);
-            emojiCategories.setupWithViewPager(emojiViewPager);
+            new TabLayoutMediator(emojiCategories, emojiViewPager,
+                (tab, position) -> tab.setText(emojiAdapter.getTitle(position))).attach();
         }
+
+        // Taken on each opening rather than on each tap, so the recent page never
+        // reorders under the user's finger.
+        recentEmojiPage = recentEmojis.getRanked();
+        emojiAdapter.refresh();
     }
 
     private void setupSuggestions() {
-        suggestionAdapter = new SuggestionAdapter(suggestions, this);
+        if (suggestionAdapter == null) {
+            suggestionAdapter = new SuggestionAdapter(this);
+        }
         binding.suggestionsRecycler.setLayoutManager(
             new LinearLayoutManager(this, LinearLayoutManager.HORIZONTAL, false));
         binding.suggestionsRecycler.setAdapter(suggestionAdapter);
@@ -126,37 +378,63 @@ public class AdvancedKeyboardService extends InputMethodService
     public void onKey(int primaryCode, int[] keyCodes) {
         InputConnection ic = getCurrentInputConnection();
         if (ic == null) return;
-        
+
+        long start = Metrics.begin(Metrics.Stage.KEY_DISPATCH);
+        if (traceRecorder != null) {
+            traceRecorder.key(primaryCode);
+        }
         switch(primaryCode) {
-            case Keyboard.KEYCODE_DELETE:
+            case KeyboardLayout.KEYCODE_DELETE:
                 handleBackspace(ic);
                 break;
-            case Keyboard.KEYCODE_SHIFT:
+            case KeyboardLayout.KEYCODE_SHIFT:
                 handleShift();
                 break;
-            case Keyboard.KEYCODE_MODE_CHANGE:
+            case KeyboardLayout.KEYCODE_MODE_CHANGE:
                 toggleKeyboardMode();
                 break;
             case KEYCODE_EMOJI:
                 toggleEmojiKeyboard();
                 break;
-            case Keyboard.KEYCODE_DONE:
+            case KEYCODE_LANGUAGE_SWITCH:
+                switchLanguage();
+                break;
+            case KeyboardLayout.KEYCODE_DONE:
+                ic.beginBatchEdit();
+                if (wordComposer.size() > 0) {
+                    ic.finishComposingText();
+                    learnComposedWord();
+                }
                 ic.sendKeyEvent(new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_ENTER));
                 ic.sendKeyEvent(new KeyEvent(KeyEvent.ACTION_UP, KeyEvent.KEYCODE_ENTER));
+                ic.endBatchEdit();
                 break;
             default:
                 handleCharacterInput(ic, primaryCode, keyCodes);
         }
+        Metrics.end(Metrics.Stage.KEY_DISPATCH, start);
     }
 
     private void handleBackspace(InputConnection ic) {
-        CharSequence before = ic.getTextBeforeCursor(1, 0);
-        if (!TextUtils.isEmpty(before)) {
+        long start = Metrics.begin(Metrics.Stage.IPC_COMMIT);
+        if (wordComposer.size() > 0) {
+            wordComposer.deleteLast();
+            ic.setComposingText(wordComposer.toString(), 1);
+            Metrics.end(Metrics.Stage.IPC_COMMIT, start);
+            updateSuggestions();
+            return;
+        }
+        if (selectionStart != selectionEnd) {
+            ic.commitText("", 1);
+        } else {
+            // Does nothing at the start of the text, so there is no need to look first.
             ic.deleteSurroundingText(1, 0);
-            if (isPredictionEnabled) {
-                wordComposer.deleteLast();
-                updateSuggestions();
-            }
+        }
+        Metrics.end(Metrics.Stage.IPC_COMMIT, start);
+        if (isPredictionEnabled) {
+            // Editing text before the current word; the context is unknown now.
+            resetContext();
+            updateSuggestions();
         }
     }
 
@@ -170,13 +448,13 @@ public class AdvancedKeyboardService extends InputMethodService
         } else {
             binding.keyboardView.setShifted(true);
         }
-        binding.keyboardView.invalidateAllKeys();
     }
 
     private void toggleKeyboardMode() {
-        currentKeyboard = (currentKeyboard == qwertyKeyboard) ? symbolsKeyboard : qwertyKeyboard;
-        binding.keyboardView.setKeyboard(currentKeyboard);
-        binding.keyboardView.invalidateAllKeys();
+        boolean toSymbols = binding.keyboardView.getKeyboard() == qwertyKeyboard;
+        // Both layouts are parsed once; switching only swaps which one is drawn.
+        binding.keyboardView.setKeyboard(toSymbols ? symbolsKeyboard : qwertyKeyboard);
+        gestureTracker.setEnabled(!toSymbols);
     }
 
     private void toggleEmojiKeyboard() {
@@ -189,6 +467,19 @@ public class AdvancedKeyboardService extends InputMethodService
         }
     }
 
+    // The previous language stays active as the secondary one, for mixed-language typing.
+    private void switchLanguage() {
+        List<String> locales = dictionary.getLocales();
+        if (locales.size() < 2) return;
+        String previous = currentLocale;
+        currentLocale = locales.get((locales.indexOf(previous) + 1) % locales.size());
+        dictionary.setActiveLocales(currentLocale, previous);
+        wordComposer.reset();
+        resetContext();
+        clearSuggestions();
+        Log.d(TAG, "Switched language to " + currentLocale);
+    }
+
     private void handleCharacterInput(InputConnection ic, int primaryCode, int[] keyCodes) {
         char code = (char) primaryCode;
         if (Character.isLetter(code)) {
@@ -197,35 +488,160 @@ public class AdvancedKeyboardService extends InputMethodService
                 binding.keyboardView.setShifted(false);
             }
         }
-        ic.commitText(String.valueOf(code), 1);
-        if (isPredictionEnabled && Character.isLetter(code)) {
+        if (isPredictionEnabled && isComposing(code)) {
             wordComposer.add(code, keyCodes);
+            // The whole word is sent again, but as one call however long it gets.
+            long start = Metrics.begin(Metrics.Stage.IPC_COMMIT);
+            ic.setComposingText(wordComposer.toString(), 1);
+            Metrics.end(Metrics.Stage.IPC_COMMIT, start);
             updateSuggestions();
         } else {
-            clearSuggestions();
+            long start = Metrics.begin(Metrics.Stage.IPC_COMMIT);
+            commitAfterWord(ic, String.valueOf(code));
+            Metrics.end(Metrics.Stage.IPC_COMMIT, start);
+            if (isPredictionEnabled && code == ' ') {
+                updateSuggestions();
+            } else {
+                resetContext();
+                clearSuggestions();
+            }
+        }
+    }
+
+    // Commits the composing word followed by text with a single call, which replaces the
+    // composing region.
+    private void commitAfterWord(InputConnection ic, CharSequence text) {
+        if (wordComposer.size() == 0) {
+            ic.commitText(text, 1);
+            return;
+        }
+        ic.commitText(wordComposer.toString() + text, 1);
+        learnComposedWord();
+    }
+
+    private void learnComposedWord() {
+        if (!noLearning && !isShortcode(wordComposer)) {
+            userDictionary.learn(wordComposer.toString());
+            commitToContext(wordComposer.toString());
+        }
+        wordComposer.reset();
+    }
+
+    // A colon starts a shortcode, which may then contain underscores.
+    private boolean isComposing(char code) {
+        if (Character.isLetter(code)) return true;
+        if (code == ':') return wordComposer.size() == 0;
+        return code == '_' && isShortcode(wordComposer);
+    }
+
+    private static boolean isShortcode(CharSequence word) {
+        return word.length() > 0 && word.charAt(0) == ':';
+    }
+
+    // Runs on the scheduler's worker thread.
+    private List<String> lookUpSuggestions(CharSequence previousWords, CharSequence typedWord,
+                                           GesturePath gesture, Cancellation cancellation) {
+        if (gesture != null) {
+            return dictionary.getGestureSuggestions(gesture, cancellation);
+        }
+        if (isShortcode(typedWord)) {
+            // A lone colon is more likely punctuation.
+            if (typedWord.length() < 2) return Collections.emptyList();
+            return emojiManager.search(typedWord, MAX_SHORTCODE_SUGGESTIONS);
         }
+        List<String> words = dictionary.getSuggestions(previousWords, typedWord, cancellation);
+        if (words != null && typedWord.length() >= 2) {
+            words.addAll(emojiManager.search(typedWord, MAX_EMOJI_SUGGESTIONS));
+        }
+        return words;
     }
 
     private void updateSuggestions() {
-        suggestions.clear();
-        List<String> newSuggestions = dictionary.getSuggestions(wordComposer);
-        if (newSuggestions != null) {
-            suggestions.addAll(newSuggestions);
+        awaitingGesture = false;
+        suggestionsRequestedAt = Metrics.now();
+        suggestionScheduler.request(predictionContext(), wordComposer.getLowerCaseWord());
+    }
+
+    private void commitToContext(String word) {
+        wordBeforeLast = lastWord;
+        lastWord = word.toLowerCase(Locale.ROOT);
+    }
+
+    private void resetContext() {
+        lastWord = "";
+        wordBeforeLast = "";
+    }
+
+    private String predictionContext() {
+        return wordBeforeLast.isEmpty() ? lastWord : wordBeforeLast + " " + lastWord;
+    }
+
+    @Override
+    public void onSuggestions(List<String> newSuggestions) {
+        Metrics.record(Metrics.Stage.KEY_TO_SUGGESTIONS, suggestionsRequestedAt);
+        if (awaitingGesture) {
+            awaitingGesture = false;
+            composeGestureWord(newSuggestions);
+        }
+        if (suggestionAdapter == null) return;
+        // Results are only delivered while still current, so the composer matches the request.
+        boolean isPrediction = wordComposer.size() == 0;
+        List<SuggestionItem> items = new ArrayList<>(newSuggestions.size());
+        for (String suggestion : newSuggestions) {
+            items.add(new SuggestionItem(suggestion, isPrediction));
         }
-        suggestionAdapter.notifyDataSetChanged();
+        suggestionAdapter.submitList(items);
     }
 
     private void clearSuggestions() {
-        suggestions.clear();
-        suggestionAdapter.notifyDataSetChanged();
+        awaitingGesture = false;
+        suggestionScheduler.cancel();
+        if (suggestionAdapter == null) return;
+        suggestionAdapter.submitList(Collections.<SuggestionItem>emptyList());
+    }
+
+    private void onGesture(GesturePath path) {
+        InputConnection ic = getCurrentInputConnection();
+        if (ic == null || !isPredictionEnabled) return;
+        // Back-to-back gestures are separate words.
+        if (wordComposer.size() > 0) {
+            commitAfterWord(ic, " ");
+        }
+        suggestionsRequestedAt = Metrics.now();
+        suggestionScheduler.requestGesture(predictionContext(), path);
+        awaitingGesture = true;
+    }
+
+    // The best word is put in as composing text, so another suggestion can replace it
+    // and a space commits it.
+    private void composeGestureWord(List<String> words) {
+        InputConnection ic = getCurrentInputConnection();
+        if (ic == null || words.isEmpty() || wordComposer.size() > 0) return;
+        String word = words.get(0);
+        for (int i = 0; i < word.length(); i++) {
+            wordComposer.add(word.charAt(i), null);
+        }
+        ic.setComposingText(word, 1);
     }
 
     @Override
     public void onSuggestionClick(String word) {
         InputConnection ic = getCurrentInputConnection();
         if (ic != null) {
-            ic.deleteSurroundingText(wordComposer.size(), 0);
+            if (traceRecorder != null) {
+                traceRecorder.pick(word);
+            }
+            // Replaces the composing word wherever it is, or inserts a prediction.
             ic.commitText(word, 1);
+            if (Character.isLetter(word.charAt(0))) {
+                if (!noLearning) {
+                    userDictionary.learn(word);
+                    commitToContext(word);
+                }
+            } else {
+                recentEmojis.record(word);
+                resetContext();
+            }
             wordComposer.reset();
             clearSuggestions();
         }
@@ -235,18 +651,10 @@ public class AdvancedKeyboardService extends InputMethodService
     public void onEmojiClick(String emoji) {
         InputConnection ic = getCurrentInputConnection();
         if (ic != null) {
-            ic.commitText(emoji, 1);
+            commitAfterWord(ic, emoji);
+            recentEmojis.record(emoji);
+            resetContext();
+            clearSuggestions();
         }
     }
-
-    @Override public void onPress(int primaryCode) {}
-    @Override public void onRelease(int primaryCode) {}
-    @Override public void onText(CharSequence text) {
-        InputConnection ic = getCurrentInputConnection();
-        if (ic != null) ic.commitText(text, 1);
-    }
-    @Override public void swipeLeft() {}
-    @Override public void swipeRight() {}
-    @Override public void swipeDown() {}
-    @Override public void swipeUp() {}
 }
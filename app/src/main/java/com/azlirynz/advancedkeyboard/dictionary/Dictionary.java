@@ -1,128 +1,402 @@
 package com.azlirynz.advancedkeyboard.dictionary;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.util.Log;
 
-import com.azlirynz.advancedkeyboard.R;
-
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.azlirynz.advancedkeyboard.metrics.MemoryFootprint;
+import com.azlirynz.advancedkeyboard.metrics.Metrics;
 
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.Type;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * The keyboard's dictionaries: one {@link LanguageModel} per locale, read from
+ * {@code assets/dictionaries/<locale>/}, plus the user's learned words.
+ *
+ * Up to two locales are active at once and queried together. Models are loaded on a
+ * background thread and kept in a {@link LocaleCache}. Activating resident locales takes
+ * effect at once; others are loaded, and published stage by stage, while lookups keep
+ * using the previous models, so switching never blocks input. After each switch the
+ * next locale in switching order is loaded ahead of time.
+ *
+ * Each loaded locale also keeps a hot tier: a small heap trie of its most frequent words.
+ * Under memory pressure the full models, the cold tiers, can be dropped; lookups then use
+ * the hot tiers until the next lookup has the full models mapped again.
+ */
 public class Dictionary {
     private static final String TAG = "Dictionary";
+    private static final String ASSET_DIRECTORY = "dictionaries";
+    private static final long MEMORY_BUDGET_BYTES = 16 * 1024 * 1024;
+    private static final int HOT_WORDS = 5000;
+
     private final Context context;
-    private final TrieNode root = new TrieNode();
-    private final List<String> words = new ArrayList<>();
-    private final Gson gson = new Gson();
+    private final Suggester suggester = new Suggester();
+    private final LocaleCache cache = new LocaleCache(MEMORY_BUDGET_BYTES);
+    private final Map<String, LanguageModel> hotTiers = new ConcurrentHashMap<>();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    // Incremented by every activation; loads for an older one give up.
+    private final AtomicInteger activation = new AtomicInteger();
+    private final List<String> locales;
+    private volatile UserDictionary userDictionary;
+    private volatile LoadProgress progress = LoadProgress.NOT_STARTED;
+    private volatile boolean closed;
+    private volatile String primaryLocale;
+    private volatile String secondaryLocale;
+    // Set while active locales are down to their hot tiers.
+    private volatile boolean coldTiersReleased;
 
     public Dictionary(Context context) {
         this.context = context;
+        this.locales = findLocales();
     }
 
-    public void load() {
-        try {
-            InputStream is = context.getResources().openRawResource(R.raw.dictionary);
-            Type type = new TypeToken<List<String>>(){}.getType();
-            List<String> dictionaryWords = gson.fromJson(new InputStreamReader(is), type);
-
-            for (String word : dictionaryWords) {
-                String cleanWord = word.trim().toLowerCase();
-                if (!cleanWord.isEmpty()) {
-                    insertWord(cleanWord);
-                    words.add(cleanWord);
+    /**
+     * Returns the locales that have a dictionary, in switching order.
+     */
+    public List<String> getLocales() {
+        return locales;
+    }
+
+    /**
+     * Returns the device's language if there is a dictionary for it, or else the first
+     * locale.
+     */
+    public String getDefaultLocale() {
+        String tag = Locale.getDefault().toLanguageTag();
+        int separator = tag.indexOf('-');
+        String language = separator >= 0 ? tag.substring(0, separator) : tag;
+        if (locales.contains(language) || locales.isEmpty()) return language;
+        return locales.get(0);
+    }
+
+    /**
+     * Makes {@code primary} and, unless null, {@code secondary} the active locales.
+     * Returns at once; models that are not loaded yet become active when they are.
+     */
+    public void setActiveLocales(final String primary, final String secondary) {
+        final int id = activation.incrementAndGet();
+        primaryLocale = primary;
+        secondaryLocale = secondary;
+        LanguageModel primaryModel = resident(primary);
+        LanguageModel secondaryModel = secondary != null ? resident(secondary) : null;
+        if (primaryModel != null && (secondary == null || secondaryModel != null)) {
+            suggester.setLanguageModels(primaryModel, secondaryModel);
+        }
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                activate(id, primary, secondary);
+            }
+        });
+    }
+
+    /**
+     * Drops the models of locales that are loaded but not active, such as the one loaded
+     * ahead of the next switch.
+     */
+    public void releaseInactive() {
+        cache.evictUnpinned();
+    }
+
+    /**
+     * Drops the full model of the secondary locale or, if {@code includingPrimary}, of both
+     * active locales, leaving their lookups to the hot tiers. The next lookup loads them
+     * again.
+     */
+    public void releaseColdTiers(final boolean includingPrimary) {
+        if (closed) return;
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                String primary = primaryLocale;
+                String secondary = secondaryLocale;
+                LanguageModel hotSecondary = secondary != null ? hotTiers.get(secondary) : null;
+                if (includingPrimary) {
+                    LanguageModel hotPrimary = hotTiers.get(primary);
+                    if (hotPrimary == null) return;
+                    suggester.setLanguageModels(hotPrimary, hotSecondary);
+                    cache.clear();
+                } else {
+                    LanguageModel primaryModel = cache.get(primary);
+                    if (secondary == null || primaryModel == null) return;
+                    suggester.setLanguageModels(primaryModel, hotSecondary);
+                    cache.remove(secondary);
                 }
+                coldTiersReleased = true;
+                Log.d(TAG, "Released cold tiers, " + cache.sizeInBytes() + " bytes still loaded");
             }
-            Log.d(TAG, "Loaded " + words.size() + " words");
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading dictionary", e);
-        }
+        });
     }
 
-    private void insertWord(String word) {
-        TrieNode current = root;
-        for (char c : word.toCharArray()) {
-            current = current.getChildren().computeIfAbsent(c, k -> new TrieNode());
+    /**
+     * Adds the loaded models, hot tiers and learned words to {@code footprint}.
+     */
+    public void addTo(MemoryFootprint footprint) {
+        for (LanguageModel model : cache.models()) {
+            model.addTo(footprint, "dictionary " + model.getLocale());
+        }
+        for (LanguageModel hotTier : hotTiers.values()) {
+            hotTier.addTo(footprint, "hot tier " + hotTier.getLocale());
+        }
+        UserDictionary user = userDictionary;
+        if (user != null) {
+            LearnedWords.Snapshot learned = user.getSnapshot();
+            footprint.add("learned words", learned.base.sizeInBytes() + learned.recent.sizeInBytes(), false);
         }
-        current.setEndOfWord(true);
     }
 
-    public List<String> getSuggestions(WordComposer composer) {
-        List<String> suggestions = new ArrayList<>();
-        String prefix = composer.getTypedWord().toString().toLowerCase();
+    /**
+     * Stops loading; a load in progress gives up at the next stage boundary.
+     */
+    public void close() {
+        closed = true;
+        loader.shutdown();
+    }
 
-        // Exact match first
-        if (words.contains(prefix)) {
-            suggestions.add(prefix);
-        }
+    /**
+     * Returns the progress of the latest load of a primary locale.
+     */
+    public LoadProgress getLoadProgress() {
+        return progress;
+    }
 
-        // Then find similar words in trie
-        findSuggestionsInTrie(prefix, suggestions);
+    private void activate(final int id, String primary, final String secondary) {
+        Cancellation superseded = new Cancellation() {
+            @Override
+            public boolean isCancelled() {
+                return closed || activation.get() != id;
+            }
+        };
+        if (superseded.isCancelled()) return;
+        cache.pin(primary, secondary);
 
-        // Finally use edit distance if needed
-        if (suggestions.size() < 3) {
-            findSimilarWords(prefix, suggestions);
+        LanguageModel primaryModel = cache.get(primary);
+        if (primaryModel == null) {
+            primaryModel = loadPrimary(primary, secondary, superseded);
+            if (primaryModel == null) return;
+        }
+        LanguageModel secondaryModel = null;
+        if (secondary != null) {
+            suggester.setLanguageModels(primaryModel, resident(secondary));
+            secondaryModel = obtain(secondary, null, superseded);
         }
+        if (superseded.isCancelled()) return;
+        suggester.setLanguageModels(primaryModel, secondaryModel);
+        Log.d(TAG, "Active locales " + primary + (secondary != null ? ", " + secondary : "")
+                + ", " + cache.sizeInBytes() + " bytes loaded");
 
-        return suggestions.subList(0, Math.min(5, suggestions.size()));
+        int next = (locales.indexOf(primary) + 1) % locales.size();
+        String prefetch = locales.get(next);
+        if (!prefetch.equals(primary) && !prefetch.equals(secondary)) {
+            obtain(prefetch, null, superseded);
+        }
     }
 
-    private void findSuggestionsInTrie(String prefix, List<String> suggestions) {
-        TrieNode node = root;
-        for (char c : prefix.toCharArray()) {
-            node = node.getChildren().get(c);
-            if (node == null) return;
+    private LanguageModel loadPrimary(final String locale, final String secondary,
+                                      Cancellation superseded) {
+        progress = LoadProgress.started();
+        LanguageModel model = obtain(locale, new StagedLoader.Listener() {
+            @Override
+            public void onStage(PackedTrie trie, boolean complete) {
+                suggester.setLanguageModels(new LanguageModel(locale, trie, null), resident(secondary));
+                progress = progress.published(trie.wordCount());
+                Log.d(TAG, "Dictionary " + locale + " " + progress);
+            }
+        }, superseded);
+        if (model != null) {
+            progress = progress.ready();
+        } else if (!superseded.isCancelled()) {
+            progress = progress.failed();
         }
-        findAllWords(node, prefix, suggestions);
+        Log.d(TAG, "Dictionary " + locale + " " + progress);
+        return model;
     }
 
-    private void findAllWords(TrieNode node, String prefix, List<String> words) {
-        if (node.isEndOfWord() && !words.contains(prefix)) {
-            words.add(prefix);
+    // Returns the cached or newly loaded model, or null if loading failed or was cancelled.
+    private LanguageModel obtain(String locale, StagedLoader.Listener stages, Cancellation cancellation) {
+        LanguageModel model = cache.get(locale);
+        if (model != null) return model;
+        long start = Metrics.begin(Metrics.Stage.DICTIONARY_LOAD);
+        try {
+            model = load(locale, stages, cancellation);
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading dictionary " + locale, e);
+            return null;
+        } finally {
+            Metrics.end(Metrics.Stage.DICTIONARY_LOAD, start);
         }
-        for (Map.Entry<Character, TrieNode> entry : node.getChildren().entrySet()) {
-            findAllWords(entry.getValue(), prefix + entry.getKey(), words);
+        if (model != null) {
+            cache.put(model);
+            if (!hotTiers.containsKey(locale)) {
+                hotTiers.put(locale, new LanguageModel(locale, model.getTrie().mostFrequent(HOT_WORDS), null));
+            }
         }
+        return model;
+    }
+
+    // The full model if loaded, or else the hot tier, or null.
+    private LanguageModel resident(String locale) {
+        LanguageModel model = cache.get(locale);
+        return model != null ? model : hotTiers.get(locale);
     }
 
-    private void findSimilarWords(String word, List<String> suggestions) {
-        for (String dictWord : words) {
-            if (editDistance(word, dictWord) <= 2 && !suggestions.contains(dictWord)) {
-                suggestions.add(dictWord);
-                if (suggestions.size() >= 5) break;
+    private LanguageModel load(String locale, StagedLoader.Listener stages, Cancellation cancellation)
+            throws IOException {
+        String directory = ASSET_DIRECTORY + "/" + locale + "/";
+        PackedTrie trie;
+        try {
+            trie = PackedTrie.read(mapAsset(directory + LanguageModel.WORDS_FILE));
+            if (stages != null) {
+                stages.onStage(trie, true);
             }
+            Log.d(TAG, "Mapped compiled dictionary " + locale);
+        } catch (IOException e) {
+            Log.w(TAG, "Compiled dictionary " + locale + " unavailable, parsing word list", e);
+            trie = loadWordList(directory + LanguageModel.WORDS_SOURCE, stages, cancellation);
+            if (trie == null) return null;
         }
+        Log.d(TAG, "Loaded " + trie.wordCount() + " words into " + trie.nodeCount()
+                + " trie nodes (" + trie.sizeInBytes() + " bytes)");
+        return new LanguageModel(locale, trie, loadNgrams(directory, trie));
     }
 
-    private int editDistance(String a, String b) {
-        int[][] dp = new int[a.length() + 1][b.length() + 1];
+    private NgramModel loadNgrams(String directory, PackedTrie trie) {
+        NgramModel ngramModel;
+        try {
+            ngramModel = NgramModel.read(mapAsset(directory + LanguageModel.NGRAMS_FILE), trie);
+        } catch (Exception e) {
+            try {
+                ngramModel = loadNgramList(directory + LanguageModel.NGRAMS_SOURCE, trie);
+            } catch (FileNotFoundException notFound) {
+                // Suggestions still work, only without predictions.
+                Log.d(TAG, "No n-gram model in " + directory);
+                return null;
+            } catch (Exception fallbackError) {
+                Log.e(TAG, "Error loading n-gram model from " + directory, fallbackError);
+                return null;
+            }
+        }
+        Log.d(TAG, "Loaded " + ngramModel.bigramCount() + " bigrams and "
+                + ngramModel.trigramCount() + " trigrams");
+        return ngramModel;
+    }
 
-        for (int i = 0; i <= a.length(); i++) {
-            for (int j = 0; j <= b.length(); j++) {
-                if (i == 0) {
-                    dp[i][j] = j;
-                } else if (j == 0) {
-                    dp[i][j] = i;
-                } else {
-                    dp[i][j] = min(
-                            dp[i-1][j-1] + (a.charAt(i-1) == b.charAt(j-1) ? 0 : 1),
-                            dp[i-1][j] + 1,
-                            dp[i][j-1] + 1
-                    );
-                }
+    private MappedByteBuffer mapAsset(String path) throws IOException {
+        // Only works because the build stores *.dict uncompressed, see app/build.gradle.
+        AssetFileDescriptor afd = context.getAssets().openFd(path);
+        try (FileInputStream in = new FileInputStream(afd.getFileDescriptor());
+             FileChannel channel = in.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength());
+        } finally {
+            afd.close();
+        }
+    }
+
+    private NgramModel loadNgramList(String path, PackedTrie trie) throws IOException {
+        try (InputStream is = context.getAssets().open(path);
+             Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+            return NgramModel.parse(trie, reader);
+        }
+    }
+
+    // Returns null if cancelled before the last stage.
+    private PackedTrie loadWordList(String path, StagedLoader.Listener stages, Cancellation cancellation)
+            throws IOException {
+        try (InputStream is = context.getAssets().open(path);
+             Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+            if (stages == null) {
+                return PackedTrie.build(WordList.parse(reader));
             }
+            return StagedLoader.load(reader, stages, cancellation);
         }
-        return dp[a.length()][b.length()];
     }
 
-    private int min(int a, int b, int c) {
-        return Math.min(a, Math.min(b, c));
+    private List<String> findLocales() {
+        String[] names;
+        try {
+            names = context.getAssets().list(ASSET_DIRECTORY);
+        } catch (IOException e) {
+            Log.e(TAG, "Error listing dictionaries", e);
+            names = null;
+        }
+        List<String> found = new ArrayList<>();
+        if (names != null) {
+            Collections.addAll(found, names);
+        }
+        Collections.sort(found);
+        return Collections.unmodifiableList(found);
+    }
+
+    /**
+     * Sets the key geometry used to weigh typos; safe to call from any thread.
+     */
+    public void setKeyProximity(KeyProximity keyProximity) {
+        suggester.setKeyProximity(keyProximity);
+    }
+
+    /**
+     * Sets the key layout gestures are decoded against; safe to call from any thread.
+     */
+    public void setGestureDecoder(GestureDecoder gestureDecoder) {
+        suggester.setGestureDecoder(gestureDecoder);
+    }
+
+    /**
+     * Sets the learned words to rank alongside the active locales; safe to call from any
+     * thread.
+     */
+    public void setUserDictionary(UserDictionary userDictionary) {
+        this.userDictionary = userDictionary;
+    }
+
+    public List<String> getSuggestions(WordComposer composer) {
+        return getSuggestions("", composer.getLowerCaseWord(), Cancellation.NONE);
+    }
+
+    /**
+     * Looks up an already lower-cased word, such as {@link WordComposer#getLowerCaseWord()},
+     * after the space-separated {@code previousWords}; see {@link Suggester}.
+     * Must only be called from one thread at a time; the search buffers are shared.
+     * Returns null if the lookup was cancelled.
+     */
+    public List<String> getSuggestions(CharSequence previousWords, CharSequence typedWord,
+                                       Cancellation cancellation) {
+        reloadIfReleased();
+        UserDictionary user = userDictionary;
+        LearnedWords.Snapshot learned = user != null ? user.getSnapshot() : null;
+        return suggester.getSuggestions(learned, previousWords, typedWord, cancellation);
+    }
+
+    /**
+     * Returns the words {@code path} most likely traces in the active locales; see
+     * {@link GestureDecoder}. Uses the same search buffers as {@link #getSuggestions},
+     * so the same one-thread rule applies. Returns null if the lookup was cancelled.
+     */
+    public List<String> getGestureSuggestions(GesturePath path, Cancellation cancellation) {
+        reloadIfReleased();
+        return suggester.getGestureSuggestions(path, cancellation);
+    }
+
+    private void reloadIfReleased() {
+        if (!coldTiersReleased) return;
+        coldTiersReleased = false;
+        setActiveLocales(primaryLocale, secondaryLocale);
     }
 }
@@ -1,21 +0,0 @@
-package com.azlirynz.advancedkeyboard.dictionary;
-
-import java.util.HashMap;
-import java.util.Map;
-
-public class TrieNode {
-    private final Map<Character, TrieNode> children = new HashMap<>();
-    private boolean endOfWord;
-
-    public Map<Character, TrieNode> getChildren() {
-        return children;
-    }
-
-    public boolean isEndOfWord() {
-        return endOfWord;
-    }
-
-    public void setEndOfWord(boolean endOfWord) {
-        this.endOfWord = endOfWord;
-    }
-}
\ No newline at end of file
@@ -0,0 +1,242 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Words learned from the user, with usage counts, persisted in app storage.
+ *
+ * Usage is appended to a journal in batches and periodically compacted into a snapshot.
+ * The snapshot records the journal generation it already contains, and each journal
+ * starts with its own generation, so a crash between writing a new snapshot and
+ * truncating the old journal cannot count the same words twice. Loading reads the
+ * snapshot and replays only the journal written after it.
+ *
+ * All file access and bookkeeping run on a private background thread; {@link #learn}
+ * may be called from any thread and readers see immutable {@link LearnedWords.Snapshot}s,
+ * which include a learned word as soon as that thread has counted it.
+ */
+public class UserDictionary {
+    private static final String TAG = "UserDictionary";
+    private static final String SNAPSHOT_FILE = "user_words.snapshot";
+    private static final String JOURNAL_FILE = "user_words.journal";
+    private static final int SNAPSHOT_MAGIC = 0x414b5553; // "AKUS"
+    private static final int JOURNAL_MAGIC = 0x414b554a; // "AKUJ"
+    private static final int VERSION = 1;
+
+    private static final int MAX_BATCH = 16;
+    private static final long FLUSH_DELAY_MS = 2000;
+    private static final long COMPACT_THRESHOLD_BYTES = 32 * 1024;
+
+    private final File directory;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    // Only written on the executor thread.
+    private final LearnedWords learnedWords = new LearnedWords();
+    private final List<String> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private int generation;
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            flushPending();
+        }
+    };
+
+    public UserDictionary(File directory) {
+        this.directory = directory;
+    }
+
+    public LearnedWords.Snapshot getSnapshot() {
+        return learnedWords.snapshot();
+    }
+
+    public void load() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readSnapshot();
+                    replayJournal();
+                } catch (IOException e) {
+                    Log.e(TAG, "Error loading user dictionary", e);
+                }
+                learnedWords.merge();
+                Log.d(TAG, "Loaded " + learnedWords.size() + " user words");
+            }
+        });
+    }
+
+    public void learn(String word) {
+        final String cleanWord = word.trim().toLowerCase(Locale.ROOT);
+        if (cleanWord.isEmpty()) return;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                learnedWords.learn(cleanWord);
+                pending.add(cleanWord);
+                if (pending.size() >= MAX_BATCH) {
+                    flushPending();
+                } else if (!flushScheduled) {
+                    flushScheduled = true;
+                    executor.schedule(flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes out anything still pending and stops the background thread.
+     */
+    public void close() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                flushPending();
+            }
+        });
+        executor.shutdown();
+    }
+
+    private void flushPending() {
+        if (pending.isEmpty()) return;
+        File journal = new File(directory, JOURNAL_FILE);
+        try {
+            ensureDirectory();
+            boolean fresh = journal.length() == 0;
+            try (FileOutputStream out = new FileOutputStream(journal, true)) {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                if (fresh) {
+                    data.writeInt(JOURNAL_MAGIC);
+                    data.writeInt(VERSION);
+                    data.writeInt(generation);
+                }
+                for (String word : pending) {
+                    data.writeUTF(word);
+                    data.writeInt(1);
+                }
+                data.flush();
+                out.getFD().sync();
+            }
+            pending.clear();
+        } catch (IOException e) {
+            // Keep the batch and retry with the next one.
+            Log.e(TAG, "Error writing user dictionary journal", e);
+            return;
+        }
+        if (journal.length() > COMPACT_THRESHOLD_BYTES) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        int nextGeneration = generation + 1;
+        File snapshot = new File(directory, SNAPSHOT_FILE);
+        File temp = new File(directory, SNAPSHOT_FILE + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                data.writeInt(SNAPSHOT_MAGIC);
+                data.writeInt(VERSION);
+                data.writeInt(nextGeneration);
+                Map<String, Integer> counts = learnedWords.counts();
+                data.writeInt(counts.size());
+                for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                    data.writeUTF(entry.getKey());
+                    data.writeInt(entry.getValue());
+                }
+                data.flush();
+                out.getFD().sync();
+            }
+            if (!temp.renameTo(snapshot)) {
+                throw new IOException("Cannot replace " + snapshot);
+            }
+            generation = nextGeneration;
+            // From here on the old journal is ignored on load even if truncating fails.
+            new FileOutputStream(new File(directory, JOURNAL_FILE)).close();
+            Log.d(TAG, "Compacted " + learnedWords.size() + " user words");
+        } catch (IOException e) {
+            Log.e(TAG, "Error compacting user dictionary", e);
+        }
+    }
+
+    private void readSnapshot() throws IOException {
+        File snapshot = new File(directory, SNAPSHOT_FILE);
+        if (!snapshot.exists()) return;
+        try (DataInputStream data = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(snapshot)))) {
+            if (data.readInt() != SNAPSHOT_MAGIC || data.readInt() != VERSION) {
+                throw new IOException("Unrecognized user dictionary snapshot");
+            }
+            generation = data.readInt();
+            int size = data.readInt();
+            for (int i = 0; i < size; i++) {
+                String word = data.readUTF();
+                learnedWords.increment(word, data.readInt());
+            }
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        File journal = new File(directory, JOURNAL_FILE);
+        if (journal.length() == 0) return;
+        long validLength = 0;
+        try (DataInputStream data = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(journal)))) {
+            if (data.readInt() != JOURNAL_MAGIC || data.readInt() != VERSION
+                    || data.readInt() < generation) {
+                // Already folded into the snapshot, or unreadable.
+                new FileOutputStream(journal).close();
+                return;
+            }
+            validLength = 12;
+            while (true) {
+                String word = data.readUTF();
+                int delta = data.readInt();
+                learnedWords.increment(word, delta);
+                validLength += 2 + modifiedUtf8Length(word) + 4;
+            }
+        } catch (EOFException e) {
+            // End of the journal, possibly with a torn last record.
+        }
+        if (validLength < journal.length()) {
+            try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+                file.setLength(validLength);
+            }
+        }
+    }
+
+    private static int modifiedUtf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            length += (c >= 0x0001 && c <= 0x007f) ? 1 : (c <= 0x07ff ? 2 : 3);
+        }
+        return length;
+    }
+
+    private void ensureDirectory() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+    }
+}
@@ -3,65 +3,109 @@ package com.azlirynz.advancedkeyboard.emoji;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.TextView;
+import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
-import androidx.viewpager.widget.PagerAdapter;
 
 import com.azlirynz.advancedkeyboard.R;
 
+import java.util.Collections;
 import java.util.List;
 
-public class EmojiAdapter extends PagerAdapter {
+/**
+ * Pages of the emoji keyboard's ViewPager2, one emoji grid per page. A page's emojis are
+ * only requested from {@link Pages} when the pager binds it, and are drawn from an
+ * {@link EmojiGlyphCache}.
+ */
+public class EmojiAdapter extends RecyclerView.Adapter<EmojiAdapter.PageViewHolder> {
     public interface OnEmojiClickListener {
         void onEmojiClick(String emoji);
     }
 
-    private final List<List<String>> emojiPages;
+    public interface Pages {
+        int getPageCount();
+
+        @NonNull
+        String getTitle(int page);
+
+        @NonNull
+        List<String> getEmojis(int page);
+    }
+
+    // Grid cells of every page come from one pool, so a swipe reuses the cells the last
+    // page let go of instead of inflating new ones.
+    private static final int POOLED_CELLS = 96;
+
+    private final Pages pages;
     private final OnEmojiClickListener listener;
+    private final EmojiGlyphCache glyphCache;
+    private final RecyclerView.RecycledViewPool cellPool = new RecyclerView.RecycledViewPool();
 
-    public EmojiAdapter(@NonNull List<List<String>> emojiPages, @NonNull OnEmojiClickListener listener) {
-        this.emojiPages = emojiPages;
+    public EmojiAdapter(@NonNull Pages pages, @NonNull EmojiGlyphCache glyphCache,
+                        @NonNull OnEmojiClickListener listener) {
+        this.pages = pages;
+        this.glyphCache = glyphCache;
         this.listener = listener;
+        cellPool.setMaxRecycledViews(0, POOLED_CELLS);
     }
 
-    @Override
-    public int getCount() {
-        return emojiPages.size();
+    /**
+     * Rebinds all pages, for when their number or contents changed.
+     */
+    public void refresh() {
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    public String getTitle(int position) {
+        return pages.getTitle(position);
     }
 
     @Override
-    public boolean isViewFromObject(@NonNull View view, @NonNull Object object) {
-        return view == object;
+    public int getItemCount() {
+        return pages.getPageCount();
     }
 
     @NonNull
     @Override
-    public Object instantiateItem(@NonNull ViewGroup container, int position) {
-        View view = LayoutInflater.from(container.getContext())
-                .inflate(R.layout.emoji_page, container, false);
-        RecyclerView recyclerView = view.findViewById(R.id.emoji_recycler_view);
-        
-        EmojiRecyclerAdapter adapter = new EmojiRecyclerAdapter(emojiPages.get(position), listener);
-        recyclerView.setAdapter(adapter);
-        
-        container.addView(view);
-        return view;
+    public PageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.emoji_page, parent, false);
+        return new PageViewHolder(view);
     }
 
     @Override
-    public void destroyItem(@NonNull ViewGroup container, int position, @NonNull Object object) {
-        container.removeView((View) object);
+    public void onBindViewHolder(@NonNull PageViewHolder holder, int position) {
+        holder.grid.setEmojis(pages.getEmojis(position));
     }
 
-    static class EmojiRecyclerAdapter extends RecyclerView.Adapter<EmojiRecyclerAdapter.EmojiViewHolder> {
-        private final List<String> emojis;
-        private final OnEmojiClickListener listener;
+    // Pages are recycled by the pager with their grid adapter and layout manager.
+    class PageViewHolder extends RecyclerView.ViewHolder {
+        final EmojiGridAdapter grid = new EmojiGridAdapter();
+
+        PageViewHolder(@NonNull View itemView) {
+            super(itemView);
+            RecyclerView recyclerView = itemView.findViewById(R.id.emoji_recycler_view);
+            int columns = itemView.getResources().getInteger(R.integer.emoji_columns);
+            GridLayoutManager layoutManager = new GridLayoutManager(itemView.getContext(), columns);
+            // Hands the cells back to the shared pool when the page leaves the screen.
+            layoutManager.setRecycleChildrenOnDetach(true);
+            recyclerView.setLayoutManager(layoutManager);
+            recyclerView.setRecycledViewPool(cellPool);
+            recyclerView.setHasFixedSize(true);
+            recyclerView.setAdapter(grid);
+        }
+    }
 
-        public EmojiRecyclerAdapter(@NonNull List<String> emojis, @NonNull OnEmojiClickListener listener) {
+    class EmojiGridAdapter extends RecyclerView.Adapter<EmojiViewHolder> {
+        private List<String> emojis = Collections.emptyList();
+
+        void setEmojis(@NonNull List<String> emojis) {
+            if (emojis == this.emojis) return;
             this.emojis = emojis;
-            this.listener = listener;
+            notifyDataSetChanged();
         }
 
         @NonNull
@@ -69,7 +113,7 @@ public class EmojiAdapter extends PagerAdapter {
         public EmojiViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
             View view = LayoutInflater.from(parent.getContext())
                     .inflate(R.layout.emoji_item, parent, false);
-            return new EmojiViewHolder(view, listener);
+            return new EmojiViewHolder(view);
         }
 
         @Override
@@ -81,21 +125,27 @@ public class EmojiAdapter extends PagerAdapter {
         public int getItemCount() {
             return emojis.size();
         }
+    }
 
-        static class EmojiViewHolder extends RecyclerView.ViewHolder {
-            private final TextView emojiView;
-            private final OnEmojiClickListener listener;
+    class EmojiViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+        private final ImageView emojiView;
+        private String emoji;
 
-            EmojiViewHolder(@NonNull View itemView, @NonNull OnEmojiClickListener listener) {
-                super(itemView);
-                this.listener = listener;
-                emojiView = itemView.findViewById(R.id.emoji_text);
-            }
+        EmojiViewHolder(@NonNull View itemView) {
+            super(itemView);
+            emojiView = itemView.findViewById(R.id.emoji_image);
+            itemView.setOnClickListener(this);
+        }
+
+        void bind(@NonNull String emoji) {
+            this.emoji = emoji;
+            emojiView.setImageBitmap(glyphCache.get(emoji));
+            emojiView.setContentDescription(emoji);
+        }
 
-            void bind(@NonNull final String emoji) {
-                emojiView.setText(emoji);
-                itemView.setOnClickListener(v -> listener.onEmojiClick(emoji));
-            }
+        @Override
+        public void onClick(View v) {
+            listener.onEmojiClick(emoji);
         }
     }
 }
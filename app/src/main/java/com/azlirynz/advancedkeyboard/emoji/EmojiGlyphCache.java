@@ -0,0 +1,55 @@
+package com.azlirynz.advancedkeyboard.emoji;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Emoji glyphs rendered once into bitmaps and kept in an LRU cache bounded in bytes, so
+ * binding a grid cell is a bitmap swap instead of text layout and color font rasterizing.
+ * Only used on the main thread.
+ */
+public class EmojiGlyphCache {
+    private static final int MAX_BYTES = 4 * 1024 * 1024;
+
+    private final TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final int size;
+    private final float baseline;
+    private final LruCache<String, Bitmap> bitmaps = new LruCache<String, Bitmap>(MAX_BYTES) {
+        @Override
+        protected int sizeOf(String glyph, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
+
+    public EmojiGlyphCache(float textSizePx) {
+        paint.setTextSize(textSizePx);
+        paint.setTextAlign(Paint.Align.CENTER);
+        Paint.FontMetrics metrics = paint.getFontMetrics();
+        size = (int) Math.ceil(metrics.descent - metrics.ascent);
+        baseline = (size - metrics.ascent - metrics.descent) / 2f;
+    }
+
+    @NonNull
+    public Bitmap get(@NonNull String glyph) {
+        Bitmap bitmap = bitmaps.get(glyph);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            new Canvas(bitmap).drawText(glyph, size / 2f, baseline, paint);
+            bitmaps.put(glyph, bitmap);
+        }
+        return bitmap;
+    }
+
+    public void clear() {
+        bitmaps.evictAll();
+    }
+
+    public long sizeInBytes() {
+        return bitmaps.size();
+    }
+}
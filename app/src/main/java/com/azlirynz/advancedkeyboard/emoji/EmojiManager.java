@@ -1,81 +1,138 @@
 package com.azlirynz.advancedkeyboard.emoji;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.util.Log;
+import android.util.LruCache;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-import androidx.annotation.RawRes;
 
-import com.azlirynz.advancedkeyboard.R;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.azlirynz.advancedkeyboard.metrics.MemoryFootprint;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.Type;
-import java.util.ArrayList;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * The emoji catalog, memory-mapped from {@code assets/emoji/}. Categories are decoded on
+ * first use and kept in a small LRU cache, so emojis the user never pages to are never
+ * turned into strings.
+ */
 public class EmojiManager {
     private static final String TAG = "EmojiManager";
+    private static final String ASSET_DIRECTORY = "emoji/";
+    // Decoded glyphs kept across page changes; a few typical categories.
+    private static final int CACHED_GLYPHS = 1024;
+
     private final Context context;
-    private final List<EmojiCategory> categories = new ArrayList<>();
-    private final Gson gson = new Gson();
+    // Replaced as a whole once loaded, so readers on other threads never see it half-filled.
+    private volatile EmojiCatalog catalog = EmojiCatalog.build(Collections.<EmojiList.Category>emptyList());
+    private final LruCache<Integer, List<String>> decodedCategories =
+            new LruCache<Integer, List<String>>(CACHED_GLYPHS) {
+                @Override
+                protected int sizeOf(Integer category, List<String> glyphs) {
+                    return Math.max(1, glyphs.size());
+                }
+            };
 
     public EmojiManager(@NonNull Context context) {
         this.context = context.getApplicationContext();
     }
 
     public void load() {
-        try (InputStream is = context.getResources().openRawResource(R.raw.emoji)) {
-            Type type = new TypeToken<List<EmojiCategory>>(){}.getType();
-            List<EmojiCategory> loadedCategories = gson.fromJson(new InputStreamReader(is), type);
-            
-            categories.clear();
-            if (loadedCategories != null) {
-                categories.addAll(loadedCategories);
-            }
-            Log.d(TAG, "Loaded " + categories.size() + " emoji categories");
+        EmojiCatalog loaded;
+        try {
+            loaded = EmojiCatalog.read(mapAsset(ASSET_DIRECTORY + EmojiCompiler.CATALOG));
         } catch (IOException e) {
-            Log.e(TAG, "Error loading emoji", e);
+            Log.w(TAG, "Compiled emoji catalog unavailable, parsing emoji data", e);
+            try {
+                loaded = parseSource();
+            } catch (IOException | RuntimeException fallbackError) {
+                Log.e(TAG, "Error loading emoji", fallbackError);
+                return;
+            }
         }
+        catalog = loaded;
+        decodedCategories.evictAll();
+        Log.d(TAG, "Loaded " + loaded.emojiCount() + " emojis in " + loaded.categoryCount()
+                + " categories, " + loaded.sizeInBytes() + " bytes");
     }
 
-    @NonNull
-    public List<EmojiCategory> getCategories() {
-        return Collections.unmodifiableList(categories);
+    private EmojiCatalog parseSource() throws IOException {
+        try (InputStream is = context.getAssets().open(ASSET_DIRECTORY + EmojiCompiler.SOURCE)) {
+            return EmojiCatalog.build(EmojiList.parse(new InputStreamReader(is, StandardCharsets.UTF_8)));
+        }
     }
 
-    @NonNull
-    public List<String> getEmojisForCategory(int categoryIndex) {
-        if (categoryIndex >= 0 && categoryIndex < categories.size()) {
-            EmojiCategory category = categories.get(categoryIndex);
-            if (category != null && category.getEmojis() != null) {
-                return Collections.unmodifiableList(category.getEmojis());
-            }
+    private MappedByteBuffer mapAsset(String path) throws IOException {
+        // Only works because the build stores *.cat uncompressed, see app/build.gradle.
+        AssetFileDescriptor afd = context.getAssets().openFd(path);
+        try (FileInputStream in = new FileInputStream(afd.getFileDescriptor());
+             FileChannel channel = in.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength());
+        } finally {
+            afd.close();
         }
-        return Collections.emptyList();
     }
 
-    public static final class EmojiCategory {
-        private final String name;
-        private final List<String> emojis;
+    public int getCategoryCount() {
+        return catalog.categoryCount();
+    }
 
-        public EmojiCategory(String name, List<String> emojis) {
-            this.name = name;
-            this.emojis = emojis != null ? new ArrayList<>(emojis) : new ArrayList<>();
-        }
+    @NonNull
+    public String getCategoryName(int categoryIndex) {
+        return catalog.categoryName(categoryIndex);
+    }
+
+    /**
+     * Returns up to {@code limit} emojis whose name or keywords have a word starting with
+     * the lower-case {@code query}, or, for a query starting with a colon, whose shortcode
+     * does. Safe to call from any thread.
+     */
+    @NonNull
+    public List<String> search(@NonNull CharSequence query, int limit) {
+        return catalog.search(query, limit);
+    }
 
-        public String getName() {
-            return name;
+    /**
+     * Returns the glyphs of a category, decoding them if they are not cached.
+     */
+    @NonNull
+    public List<String> getEmojisForCategory(int categoryIndex) {
+        EmojiCatalog catalog = this.catalog;
+        if (categoryIndex < 0 || categoryIndex >= catalog.categoryCount()) {
+            return Collections.emptyList();
         }
+        List<String> glyphs = decodedCategories.get(categoryIndex);
+        if (glyphs == null) {
+            glyphs = catalog.categoryGlyphs(categoryIndex);
+            decodedCategories.put(categoryIndex, glyphs);
+        }
+        return glyphs;
+    }
 
-        @NonNull
-        public List<String> getEmojis() {
-            return Collections.unmodifiableList(emojis);
+    /**
+     * Drops the decoded categories; they are decoded again when next shown.
+     */
+    public void releaseDecoded() {
+        decodedCategories.evictAll();
+    }
+
+    public void addTo(MemoryFootprint footprint) {
+        EmojiCatalog catalog = this.catalog;
+        footprint.add("emoji catalog", catalog.sizeInBytes(), catalog.isMapped());
+        long decoded = 0;
+        for (List<String> glyphs : decodedCategories.snapshot().values()) {
+            for (String glyph : glyphs) {
+                decoded += 2L * glyph.length();
+            }
         }
+        footprint.add("decoded emoji", decoded, false);
     }
 }
@@ -0,0 +1,132 @@
+package com.azlirynz.advancedkeyboard.emoji;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The user's recent and frequent emojis, persisted in app storage.
+ *
+ * The file holds the glyphs themselves, so the tab can be restored without the emoji
+ * data. Uses are counted on a private background thread and written out at most once
+ * per {@link #FLUSH_DELAY_MS}, so {@link #record} never touches the disk on the caller's
+ * thread and a burst of taps costs one write.
+ */
+public class RecentEmojis {
+    private static final String TAG = "RecentEmojis";
+    private static final String FILE = "recent_emojis";
+    private static final long FLUSH_DELAY_MS = 5000;
+
+    private final File file;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    // Only used on the executor thread.
+    private final EmojiUsage usage = new EmojiUsage();
+    private boolean dirty;
+    private boolean flushScheduled;
+    private volatile List<String> ranked = Collections.emptyList();
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            write();
+        }
+    };
+
+    public RecentEmojis(File directory) {
+        this.file = new File(directory, FILE);
+    }
+
+    public void load() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (file.exists()) {
+                    try (DataInputStream in = new DataInputStream(
+                            new BufferedInputStream(new FileInputStream(file)))) {
+                        usage.readFrom(in);
+                    } catch (IOException e) {
+                        Log.e(TAG, "Error loading recent emojis", e);
+                    }
+                }
+                ranked = usage.ranked();
+                Log.d(TAG, "Loaded " + usage.size() + " recent emojis");
+            }
+        });
+    }
+
+    /**
+     * Returns the emojis from most to least used, weighted toward recent use.
+     */
+    @NonNull
+    public List<String> getRanked() {
+        return ranked;
+    }
+
+    public void record(final String glyph) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                usage.record(glyph);
+                ranked = usage.ranked();
+                dirty = true;
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    executor.schedule(flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes out unsaved uses and stops the background thread.
+     */
+    public void close() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        });
+        executor.shutdown();
+    }
+
+    private void write() {
+        if (!dirty) return;
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            File directory = file.getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                usage.writeTo(data);
+                data.flush();
+                out.getFD().sync();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Cannot replace " + file);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            // Stays dirty and is retried with the next use or on close.
+            Log.e(TAG, "Error writing recent emojis", e);
+        }
+    }
+}
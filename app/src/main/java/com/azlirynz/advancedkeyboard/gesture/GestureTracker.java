@@ -0,0 +1,91 @@
+package com.azlirynz.advancedkeyboard.gesture;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import com.azlirynz.advancedkeyboard.dictionary.GesturePath;
+
+/**
+ * Records the touch path over the key view and takes over once a touch has travelled far
+ * enough to be a gesture rather than a tap.
+ *
+ * Until then every event also reaches the view, so taps, long presses and key repeat
+ * behave as before; when a gesture starts the view is sent a cancel and forgets the key
+ * it was pressing. The finished path is handed to the listener on the up event.
+ */
+public class GestureTracker implements View.OnTouchListener {
+    public interface OnGestureListener {
+        void onGesture(@NonNull GesturePath path);
+    }
+
+    private final float startDistance;
+    private final OnGestureListener listener;
+    private final GesturePath path = new GesturePath();
+    private boolean enabled = true;
+    private boolean tracing;
+    private float downX;
+    private float downY;
+
+    /**
+     * @param startDistance how far, in view pixels, a touch has to move to become a gesture
+     */
+    public GestureTracker(float startDistance, @NonNull OnGestureListener listener) {
+        this.startDistance = startDistance;
+        this.listener = listener;
+    }
+
+    /**
+     * Turns gestures off, such as on a layout without letters; takes effect from the next
+     * touch.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean onTouch(View view, MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                tracing = false;
+                path.reset();
+                downX = event.getX();
+                downY = event.getY();
+                path.add(downX, downY);
+                return false;
+            case MotionEvent.ACTION_MOVE:
+                if (!enabled || path.size() == 0) return tracing;
+                for (int i = 0; i < event.getHistorySize(); i++) {
+                    path.add(event.getHistoricalX(i), event.getHistoricalY(i));
+                }
+                path.add(event.getX(), event.getY());
+                if (!tracing && event.getPointerCount() == 1 && movedFarEnough(event)) {
+                    tracing = true;
+                    MotionEvent cancel = MotionEvent.obtain(event);
+                    cancel.setAction(MotionEvent.ACTION_CANCEL);
+                    view.onTouchEvent(cancel);
+                    cancel.recycle();
+                }
+                return tracing;
+            case MotionEvent.ACTION_UP:
+                if (!tracing) return false;
+                tracing = false;
+                listener.onGesture(path.copy());
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                boolean wasTracing = tracing;
+                tracing = false;
+                return wasTracing;
+            default:
+                // Further fingers during a gesture are ignored.
+                return tracing;
+        }
+    }
+
+    private boolean movedFarEnough(MotionEvent event) {
+        float dx = event.getX() - downX;
+        float dy = event.getY() - downY;
+        return dx * dx + dy * dy > startDistance * startDistance;
+    }
+}
@@ -0,0 +1,356 @@
+package com.azlirynz.advancedkeyboard.keyboard;
+
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.content.res.XmlResourceParser;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.TypedValue;
+import android.util.Xml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.XmlRes;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A keyboard read from a {@code <Keyboard>} XML resource, in the format of the framework's
+ * deprecated {@code android.inputmethodservice.Keyboard}.
+ *
+ * The XML is parsed once. Horizontal positions are kept as fractions of the keyboard width
+ * and turned into pixel bounds by {@link #layout}, so a width change costs one pass over
+ * the keys. Bounds are flat primitive arrays indexed by key. {@link #keyAt} finds a key
+ * through a uniform grid whose cells are no larger than the smallest key, so each cell
+ * holds a handful of candidates.
+ */
+public class KeyboardLayout {
+    private static final String TAG = "KeyboardLayout";
+
+    public static final int KEYCODE_SHIFT = -1;
+    public static final int KEYCODE_MODE_CHANGE = -2;
+    public static final int KEYCODE_DONE = -4;
+    public static final int KEYCODE_DELETE = -5;
+    public static final int NO_KEY = -1;
+
+    private static final int[] KEYBOARD_ATTRS = sorted(android.R.attr.keyWidth,
+            android.R.attr.keyHeight, android.R.attr.horizontalGap, android.R.attr.verticalGap);
+    private static final int[] KEY_ATTRS = sorted(android.R.attr.keyWidth,
+            android.R.attr.keyHeight, android.R.attr.horizontalGap, android.R.attr.codes,
+            android.R.attr.keyLabel, android.R.attr.isRepeatable);
+
+    private final int keyCount;
+    private final int[][] codes;
+    private final String[] labels;
+    private final boolean[] repeatable;
+    // Fractions of the keyboard width.
+    private final float[] left;
+    private final float[] widthFraction;
+    private final int[] top;
+    private final int[] rowHeight;
+    private final int height;
+    private final boolean hasShiftableKeys;
+
+    // Pixel bounds for the current width.
+    private final int[] x;
+    private final int[] width;
+    private int layoutWidth;
+
+    // Keys overlapping grid cell c are cellKeys[cellStart[c] .. cellStart[c + 1]).
+    private int cellWidth;
+    private int cellHeight;
+    private int columns;
+    private int rows;
+    private int[] cellStart = new int[0];
+    private int[] cellKeys = new int[0];
+
+    private KeyboardLayout(List<Key> keys, int height) {
+        keyCount = keys.size();
+        codes = new int[keyCount][];
+        labels = new String[keyCount];
+        repeatable = new boolean[keyCount];
+        left = new float[keyCount];
+        widthFraction = new float[keyCount];
+        top = new int[keyCount];
+        rowHeight = new int[keyCount];
+        x = new int[keyCount];
+        width = new int[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            Key key = keys.get(i);
+            codes[i] = key.codes;
+            labels[i] = key.label;
+            repeatable[i] = key.repeatable;
+            left[i] = key.left;
+            widthFraction[i] = key.width;
+            top[i] = key.top;
+            rowHeight[i] = key.height;
+        }
+        this.height = height;
+        boolean shiftable = false;
+        for (int i = 0; i < keyCount && !shiftable; i++) {
+            shiftable = isShiftable(i);
+        }
+        hasShiftableKeys = shiftable;
+    }
+
+    /**
+     * Parses a keyboard resource. Percentages ({@code 10%p}) are taken of the keyboard
+     * width; absolute widths are converted against the screen width, which is what the
+     * keyboard is first laid out at.
+     */
+    @NonNull
+    public static KeyboardLayout inflate(@NonNull Resources res, @XmlRes int id) {
+        float screenWidth = res.getDisplayMetrics().widthPixels;
+        List<Key> keys = new ArrayList<>();
+        int y = 0;
+        float defaultWidth = 0.1f;
+        int defaultHeight = 0;
+        float defaultGap = 0;
+        int verticalGap = 0;
+        float rowX = 0;
+        int rowHeight = 0;
+        XmlResourceParser parser = res.getXml(id);
+        try {
+            AttributeSet attrs = Xml.asAttributeSet(parser);
+            int event;
+            while ((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (event == XmlPullParser.START_TAG) {
+                    String tag = parser.getName();
+                    if ("Keyboard".equals(tag)) {
+                        TypedArray a = res.obtainAttributes(attrs, KEYBOARD_ATTRS);
+                        defaultWidth = widthOf(a, KEYBOARD_ATTRS, android.R.attr.keyWidth, screenWidth, defaultWidth);
+                        defaultHeight = a.getDimensionPixelSize(
+                                indexOf(KEYBOARD_ATTRS, android.R.attr.keyHeight), defaultHeight);
+                        defaultGap = widthOf(a, KEYBOARD_ATTRS, android.R.attr.horizontalGap, screenWidth, 0);
+                        verticalGap = a.getDimensionPixelSize(
+                                indexOf(KEYBOARD_ATTRS, android.R.attr.verticalGap), 0);
+                        a.recycle();
+                    } else if ("Row".equals(tag)) {
+                        rowX = 0;
+                        rowHeight = defaultHeight;
+                    } else if ("Key".equals(tag)) {
+                        TypedArray a = res.obtainAttributes(attrs, KEY_ATTRS);
+                        Key key = new Key();
+                        float gap = widthOf(a, KEY_ATTRS, android.R.attr.horizontalGap, screenWidth, defaultGap);
+                        key.width = widthOf(a, KEY_ATTRS, android.R.attr.keyWidth, screenWidth, defaultWidth);
+                        key.height = a.getDimensionPixelSize(
+                                indexOf(KEY_ATTRS, android.R.attr.keyHeight), defaultHeight);
+                        key.left = rowX + gap;
+                        key.top = y;
+                        key.codes = codesOf(a);
+                        key.label = a.getString(indexOf(KEY_ATTRS, android.R.attr.keyLabel));
+                        key.repeatable = a.getBoolean(indexOf(KEY_ATTRS, android.R.attr.isRepeatable), false);
+                        a.recycle();
+                        rowX = key.left + key.width;
+                        rowHeight = Math.max(rowHeight, key.height);
+                        keys.add(key);
+                    }
+                } else if (event == XmlPullParser.END_TAG && "Row".equals(parser.getName())) {
+                    y += rowHeight + verticalGap;
+                }
+            }
+        } catch (XmlPullParserException | IOException e) {
+            Log.e(TAG, "Error parsing keyboard " + res.getResourceEntryName(id), e);
+        } finally {
+            parser.close();
+        }
+        KeyboardLayout layout = new KeyboardLayout(keys, Math.max(0, y - verticalGap));
+        layout.layout(Math.round(screenWidth));
+        return layout;
+    }
+
+    /**
+     * Computes pixel bounds and the hit-test grid for a keyboard {@code width} pixels wide.
+     */
+    public void layout(int width) {
+        if (width == layoutWidth || width <= 0) return;
+        layoutWidth = width;
+        int minWidth = width;
+        int minHeight = Math.max(1, height);
+        for (int i = 0; i < keyCount; i++) {
+            x[i] = Math.round(left[i] * width);
+            this.width[i] = Math.round((left[i] + widthFraction[i]) * width) - x[i];
+            if (this.width[i] > 0) {
+                minWidth = Math.min(minWidth, this.width[i]);
+            }
+            if (rowHeight[i] > 0) {
+                minHeight = Math.min(minHeight, rowHeight[i]);
+            }
+        }
+        buildGrid(Math.max(1, minWidth), Math.max(1, minHeight));
+    }
+
+    private void buildGrid(int cellWidth, int cellHeight) {
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        columns = (layoutWidth + cellWidth - 1) / cellWidth;
+        rows = Math.max(1, (height + cellHeight - 1) / cellHeight);
+        int cellCount = columns * rows;
+        // Counted first, then filled, so the grid is two flat arrays.
+        int[] next = new int[cellCount + 1];
+        addToCells(next, null);
+        for (int cell = 0; cell < cellCount; cell++) {
+            next[cell + 1] += next[cell];
+        }
+        cellStart = next.clone();
+        cellKeys = new int[next[cellCount]];
+        addToCells(next, cellKeys);
+    }
+
+    // Without keys, counts each cell's keys into next[cell + 1]; with keys, stores them
+    // at next[cell] onwards.
+    private void addToCells(int[] next, int[] keys) {
+        for (int i = 0; i < keyCount; i++) {
+            int firstColumn = clamp(x[i] / cellWidth, columns);
+            int lastColumn = clamp((x[i] + width[i] - 1) / cellWidth, columns);
+            int firstRow = clamp(top[i] / cellHeight, rows);
+            int lastRow = clamp((top[i] + rowHeight[i] - 1) / cellHeight, rows);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int cell = row * columns + column;
+                    if (keys == null) {
+                        next[cell + 1]++;
+                    } else {
+                        keys[next[cell]++] = i;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int clamp(int value, int count) {
+        return Math.max(0, Math.min(count - 1, value));
+    }
+
+    /**
+     * Returns the key containing the point, or the nearest one in its grid cell when the
+     * point falls in a gap; {@link #NO_KEY} if outside the keyboard.
+     */
+    public int keyAt(int px, int py) {
+        if (px < 0 || py < 0 || px >= layoutWidth || py >= height) return NO_KEY;
+        int cell = clamp(py / cellHeight, rows) * columns + clamp(px / cellWidth, columns);
+        int nearest = NO_KEY;
+        long nearestDistance = Long.MAX_VALUE;
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+            int key = cellKeys[i];
+            long dx = Math.max(0, Math.max(x[key] - px, px - (x[key] + width[key] - 1)));
+            long dy = Math.max(0, Math.max(top[key] - py, py - (top[key] + rowHeight[key] - 1)));
+            long distance = dx * dx + dy * dy;
+            if (distance == 0) return key;
+            if (distance < nearestDistance) {
+                nearest = key;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    public int getWidth() {
+        return layoutWidth;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCode(int key) {
+        return codes[key].length > 0 ? codes[key][0] : 0;
+    }
+
+    /**
+     * All codes of a key, primary first. Shared; must not be modified.
+     */
+    public int[] getCodes(int key) {
+        return codes[key];
+    }
+
+    public String getLabel(int key) {
+        return labels[key];
+    }
+
+    public boolean isRepeatable(int key) {
+        return repeatable[key];
+    }
+
+    public int getX(int key) {
+        return x[key];
+    }
+
+    public int getY(int key) {
+        return top[key];
+    }
+
+    public int getKeyWidth(int key) {
+        return width[key];
+    }
+
+    public int getKeyHeight(int key) {
+        return rowHeight[key];
+    }
+
+    /**
+     * Whether the key's label follows the shift state.
+     */
+    public boolean isShiftable(int key) {
+        int code = getCode(key);
+        return code > 0 && Character.isLetter(code);
+    }
+
+    public boolean hasShiftableKeys() {
+        return hasShiftableKeys;
+    }
+
+    private static float widthOf(TypedArray a, int[] attrs, int attr, float screenWidth, float fallback) {
+        TypedValue value = a.peekValue(indexOf(attrs, attr));
+        if (value == null) return fallback;
+        if (value.type == TypedValue.TYPE_FRACTION) {
+            return value.getFraction(1, 1);
+        }
+        return a.getDimensionPixelOffset(indexOf(attrs, attr), 0) / screenWidth;
+    }
+
+    // android:codes is either one integer or a comma-separated list.
+    private static int[] codesOf(TypedArray a) {
+        int index = indexOf(KEY_ATTRS, android.R.attr.codes);
+        TypedValue value = a.peekValue(index);
+        if (value == null) return new int[0];
+        if (value.type == TypedValue.TYPE_INT_DEC || value.type == TypedValue.TYPE_INT_HEX) {
+            return new int[] {value.data};
+        }
+        String[] parts = a.getString(index).split(",");
+        int[] codes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            codes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return codes;
+    }
+
+    // obtainAttributes needs the attribute ids in ascending order.
+    private static int[] sorted(int... attrs) {
+        Arrays.sort(attrs);
+        return attrs;
+    }
+
+    private static int indexOf(int[] attrs, int attr) {
+        return Arrays.binarySearch(attrs, attr);
+    }
+
+    private static final class Key {
+        int[] codes;
+        String label;
+        boolean repeatable;
+        float left;
+        float width;
+        int top;
+        int height;
+    }
+}
@@ -0,0 +1,295 @@
+package com.azlirynz.advancedkeyboard.keyboard;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.azlirynz.advancedkeyboard.R;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Draws a {@link KeyboardLayout} and turns touches into key codes.
+ *
+ * Every key in its resting state is rendered once into a bitmap layer per layout and shift
+ * state, so a frame is one bitmap draw plus the pressed key on top. Pressing a key or
+ * changing shift invalidates the whole view: with hardware acceleration the dirty
+ * rectangle is ignored, and redrawing is cheap because the layer is left untouched and
+ * never uploaded again. Layers are built lazily and kept until {@link #releaseLayers} or a
+ * size change.
+ */
+public class KeysView extends View {
+    public interface Listener {
+        void onKey(int primaryCode, int[] keyCodes);
+
+        /**
+         * Called when key bounds change, so anything measured against them can follow.
+         */
+        void onKeyboardLayout(@NonNull KeyboardLayout layout);
+    }
+
+    private static final long REPEAT_START_DELAY_MS = 400;
+    private static final long REPEAT_INTERVAL_MS = 50;
+
+    private final Paint keyPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF keyRect = new RectF();
+    private final float keyGap;
+    private final float keyRadius;
+    private final float labelTextSize;
+    private final float wordTextSize;
+    private final int backgroundColor;
+    private final int keyColor;
+    private final int specialKeyColor;
+    private final int pressedColor;
+
+    // Unshifted and shifted layers of each layout drawn so far.
+    private final Map<KeyboardLayout, Bitmap[]> layers = new HashMap<>();
+
+    private KeyboardLayout keyboard;
+    private Listener listener;
+    private boolean shifted;
+    private int pressedKey = KeyboardLayout.NO_KEY;
+
+    private final Runnable repeat = new Runnable() {
+        @Override
+        public void run() {
+            if (pressedKey == KeyboardLayout.NO_KEY) return;
+            sendKey(pressedKey);
+            postDelayed(this, REPEAT_INTERVAL_MS);
+        }
+    };
+
+    public KeysView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        keyGap = getResources().getDimension(R.dimen.key_horizontal_gap);
+        keyRadius = getResources().getDimension(R.dimen.key_corner_radius);
+        labelTextSize = getResources().getDimension(R.dimen.key_label_text_size);
+        wordTextSize = getResources().getDimension(R.dimen.key_word_text_size);
+        backgroundColor = ContextCompat.getColor(context, R.color.keyboard_background);
+        keyColor = ContextCompat.getColor(context, R.color.key_background);
+        specialKeyColor = ContextCompat.getColor(context, R.color.key_special_background);
+        pressedColor = ContextCompat.getColor(context, R.color.key_pressed);
+        labelPaint.setColor(ContextCompat.getColor(context, R.color.key_text));
+        labelPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void setKeyboard(@NonNull KeyboardLayout keyboard) {
+        if (keyboard == this.keyboard) return;
+        releaseKey();
+        boolean resized = this.keyboard == null || this.keyboard.getHeight() != keyboard.getHeight();
+        this.keyboard = keyboard;
+        if (getWidth() > 0) {
+            layOut(getWidth());
+        }
+        if (resized) {
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    public KeyboardLayout getKeyboard() {
+        return keyboard;
+    }
+
+    public boolean isShifted() {
+        return shifted;
+    }
+
+    public void setShifted(boolean shifted) {
+        if (shifted == this.shifted) return;
+        this.shifted = shifted;
+        if (keyboard != null && keyboard.hasShiftableKeys()) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Drops the cached layers; they are drawn again when next needed.
+     */
+    public void releaseLayers() {
+        for (Bitmap[] pair : layers.values()) {
+            for (Bitmap layer : pair) {
+                if (layer != null) {
+                    layer.recycle();
+                }
+            }
+        }
+        layers.clear();
+    }
+
+    /**
+     * Returns the bytes held by the cached layers.
+     */
+    public long getLayerBytes() {
+        long bytes = 0;
+        for (Bitmap[] pair : layers.values()) {
+            for (Bitmap layer : pair) {
+                if (layer != null) {
+                    bytes += layer.getAllocationByteCount();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = keyboard != null ? keyboard.getHeight() : 0;
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (w != oldw) {
+            releaseLayers();
+        }
+        if (keyboard != null) {
+            layOut(w);
+        }
+    }
+
+    private void layOut(int width) {
+        int before = keyboard.getWidth();
+        keyboard.layout(width);
+        if (keyboard.getWidth() != before && listener != null) {
+            listener.onKeyboardLayout(keyboard);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        releaseKey();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (keyboard == null) return;
+        Bitmap layer = getLayer();
+        if (layer != null) {
+            canvas.drawBitmap(layer, 0, 0, null);
+        }
+        if (pressedKey != KeyboardLayout.NO_KEY) {
+            drawKey(canvas, pressedKey, true);
+        }
+    }
+
+    private Bitmap getLayer() {
+        if (getWidth() <= 0 || keyboard.getHeight() <= 0) return null;
+        Bitmap[] pair = layers.get(keyboard);
+        if (pair == null) {
+            pair = new Bitmap[2];
+            layers.put(keyboard, pair);
+        }
+        int state = shifted && keyboard.hasShiftableKeys() ? 1 : 0;
+        if (pair[state] == null) {
+            // Keys are opaque, so 16-bit colour halves the layer at no visible cost.
+            Bitmap layer = Bitmap.createBitmap(getWidth(), keyboard.getHeight(), Bitmap.Config.RGB_565);
+            Canvas canvas = new Canvas(layer);
+            canvas.drawColor(backgroundColor);
+            for (int key = 0; key < keyboard.getKeyCount(); key++) {
+                drawKey(canvas, key, false);
+            }
+            pair[state] = layer;
+        }
+        return pair[state];
+    }
+
+    private void drawKey(Canvas canvas, int key, boolean pressed) {
+        float left = keyboard.getX(key);
+        float top = keyboard.getY(key);
+        keyRect.set(left + keyGap / 2, top + keyGap / 2,
+                left + keyboard.getKeyWidth(key) - keyGap / 2, top + keyboard.getKeyHeight(key) - keyGap / 2);
+        keyPaint.setColor(pressed ? pressedColor : keyboard.getCode(key) < 0 ? specialKeyColor : keyColor);
+        canvas.drawRoundRect(keyRect, keyRadius, keyRadius, keyPaint);
+
+        String label = keyboard.getLabel(key);
+        if (label == null) return;
+        if (shifted && keyboard.isShiftable(key)) {
+            label = label.toUpperCase(Locale.getDefault());
+        }
+        labelPaint.setTextSize(label.length() > 1 ? wordTextSize : labelTextSize);
+        float baseline = keyRect.centerY() - (labelPaint.descent() + labelPaint.ascent()) / 2;
+        canvas.drawText(label, keyRect.centerX(), baseline, labelPaint);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (keyboard == null) return false;
+        int key = keyboard.keyAt((int) event.getX(), (int) event.getY());
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                pressKey(key);
+                if (key != KeyboardLayout.NO_KEY && keyboard.isRepeatable(key)) {
+                    // Repeatable keys act on the press, then again while held.
+                    sendKey(key);
+                    postDelayed(repeat, REPEAT_START_DELAY_MS);
+                }
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (key != pressedKey) {
+                    removeCallbacks(repeat);
+                    pressKey(key);
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+                int released = pressedKey;
+                boolean repeated = released != KeyboardLayout.NO_KEY && keyboard.isRepeatable(released);
+                releaseKey();
+                if (released != KeyboardLayout.NO_KEY && !repeated) {
+                    sendKey(released);
+                }
+                performClick();
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                releaseKey();
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private void pressKey(int key) {
+        if (key == pressedKey) return;
+        pressedKey = key;
+        invalidate();
+    }
+
+    private void releaseKey() {
+        removeCallbacks(repeat);
+        if (keyboard != null) {
+            pressKey(KeyboardLayout.NO_KEY);
+        } else {
+            pressedKey = KeyboardLayout.NO_KEY;
+        }
+    }
+
+    private void sendKey(int key) {
+        if (listener != null) {
+            listener.onKey(keyboard.getCode(key), keyboard.getCodes(key));
+        }
+    }
+}
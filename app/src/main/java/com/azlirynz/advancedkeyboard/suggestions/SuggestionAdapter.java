@@ -1,27 +1,46 @@
 package com.azlirynz.advancedkeyboard.suggestions;
 
+import android.graphics.Typeface;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.azlirynz.advancedkeyboard.R;
+import com.azlirynz.advancedkeyboard.metrics.Metrics;
 
-import java.util.List;
-
-public class SuggestionAdapter extends RecyclerView.Adapter<SuggestionAdapter.SuggestionViewHolder> {
+/**
+ * Shows the suggestion strip. Each result is submitted as a new immutable list and
+ * diffed against the shown one off the main thread, so a keystroke only rebinds the
+ * rows that actually changed.
+ */
+public class SuggestionAdapter extends ListAdapter<SuggestionItem, SuggestionAdapter.SuggestionViewHolder> {
     public interface OnSuggestionClickListener {
         void onSuggestionClick(String word);
     }
 
-    private final List<String> suggestions;
+    private static final DiffUtil.ItemCallback<SuggestionItem> DIFF = new DiffUtil.ItemCallback<SuggestionItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull SuggestionItem oldItem, @NonNull SuggestionItem newItem) {
+            // Suggestions are unique within a list, so the text identifies a row.
+            return oldItem.getText().equals(newItem.getText());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull SuggestionItem oldItem, @NonNull SuggestionItem newItem) {
+            return oldItem.isPrediction() == newItem.isPrediction();
+        }
+    };
+
     private final OnSuggestionClickListener listener;
 
-    public SuggestionAdapter(List<String> suggestions, OnSuggestionClickListener listener) {
-        this.suggestions = suggestions;
+    public SuggestionAdapter(OnSuggestionClickListener listener) {
+        super(DIFF);
         this.listener = listener;
     }
 
@@ -35,25 +54,31 @@ public class SuggestionAdapter extends RecyclerView.Adapter<SuggestionAdapter.Su
 
     @Override
     public void onBindViewHolder(@NonNull SuggestionViewHolder holder, int position) {
-        holder.bind(suggestions.get(position));
+        long start = Metrics.begin(Metrics.Stage.UI_BIND);
+        holder.bind(getItem(position));
+        Metrics.end(Metrics.Stage.UI_BIND, start);
     }
 
-    @Override
-    public int getItemCount() {
-        return suggestions.size();
-    }
-
-    class SuggestionViewHolder extends RecyclerView.ViewHolder {
+    class SuggestionViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
         private final TextView suggestionText;
 
         SuggestionViewHolder(View itemView) {
             super(itemView);
             suggestionText = itemView.findViewById(R.id.suggestion_text);
+            itemView.setOnClickListener(this);
+        }
+
+        void bind(SuggestionItem item) {
+            suggestionText.setText(item.getText());
+            suggestionText.setTypeface(null, item.isPrediction() ? Typeface.ITALIC : Typeface.NORMAL);
         }
 
-        void bind(final String suggestion) {
-            suggestionText.setText(suggestion);
-            itemView.setOnClickListener(v -> listener.onSuggestionClick(suggestion));
+        @Override
+        public void onClick(View v) {
+            int position = getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                listener.onSuggestionClick(getItem(position).getText());
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,84 @@
+package com.azlirynz.advancedkeyboard.trace;
+
+import android.text.InputType;
+import android.util.Log;
+import android.view.inputmethod.EditorInfo;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records what is typed into a {@link TypingTrace} and saves one trace file per input
+ * session, for replaying off the device. Password fields are never recorded.
+ *
+ * Meant for debugging only: the service creates one just when asked to, and all calls
+ * come from the main thread.
+ */
+public class TypingTraceRecorder {
+    public static final String SUFFIX = ".trace";
+    private static final String TAG = "TypingTraceRecorder";
+
+    private final File directory;
+    private final TypingTrace trace = new TypingTrace();
+    private boolean recording;
+
+    public TypingTraceRecorder(@NonNull File directory) {
+        this.directory = directory;
+    }
+
+    public void startInput(EditorInfo attribute) {
+        recording = !isPassword(attribute.inputType);
+    }
+
+    public void key(int code) {
+        if (recording) {
+            trace.addKey(code);
+        }
+    }
+
+    public void pick(String word) {
+        if (recording) {
+            trace.addPick(word);
+        }
+    }
+
+    public void reset() {
+        if (recording) {
+            trace.addReset();
+        }
+    }
+
+    /**
+     * Saves the session's events, if any, as a new file in the directory.
+     */
+    public void finishInput() {
+        recording = false;
+        if (trace.size() == 0) return;
+        File file = new File(directory, System.currentTimeMillis() + SUFFIX);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create " + directory);
+        } else {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)))) {
+                trace.writeTo(out);
+                Log.d(TAG, "Saved " + trace.size() + " events to " + file);
+            } catch (IOException e) {
+                Log.w(TAG, "Error saving typing trace", e);
+            }
+        }
+        trace.clear();
+    }
+
+    public static boolean isPassword(int inputType) {
+        int variation = inputType & (InputType.TYPE_MASK_CLASS | InputType.TYPE_MASK_VARIATION);
+        return variation == (InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PASSWORD)
+                || variation == (InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_VISIBLE_PASSWORD)
+                || variation == (InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_WEB_PASSWORD)
+                || variation == (InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_VARIATION_PASSWORD);
+    }
+}
@@ -0,0 +1,76 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.LanguageModel;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.Suggester;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups for misspelled words that no dictionary word starts with, so every query takes
+ * the fuzzy correction path, in a dictionary of up to full size.
+ *
+ * {@link #getSuggestions} looks up whole misspellings one after another, so little search
+ * state carries over. {@link #typeKeystroke} types them a letter at a time, as the
+ * keyboard does, and measures the lookup after each keystroke.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CorrectionBenchmark {
+    @Param({"1", "2"})
+    public int edits;
+
+    @Param({"10000", "200000"})
+    public int wordCount;
+
+    private final Suggester suggester = new Suggester();
+    private String[] misspellings;
+    // Every prefix of every misspelling, in typing order.
+    private String[] keystrokes;
+    private int next;
+    private int nextKeystroke;
+
+    @Setup
+    public void setUp() throws IOException {
+        WordList words = SyntheticDictionary.extendedWordList(wordCount, 42);
+        PackedTrie trie = PackedTrie.build(words);
+        suggester.setLanguageModels(new LanguageModel("synthetic", trie, null), null);
+        misspellings = SyntheticDictionary.misspellings(words, trie, edits, 42);
+        List<String> typed = new ArrayList<>();
+        for (String misspelling : misspellings) {
+            for (int length = 1; length <= misspelling.length(); length++) {
+                typed.add(misspelling.substring(0, length));
+            }
+        }
+        keystrokes = typed.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public List<String> getSuggestions() {
+        String misspelling = misspellings[next];
+        next = (next + 1) % misspellings.length;
+        return suggester.getSuggestions(null, "", misspelling, Cancellation.NONE);
+    }
+
+    @Benchmark
+    public List<String> typeKeystroke() {
+        String typed = keystrokes[nextKeystroke];
+        nextKeystroke = (nextKeystroke + 1) % keystrokes.length;
+        return suggester.getSuggestions(null, "", typed, Cancellation.NONE);
+    }
+}
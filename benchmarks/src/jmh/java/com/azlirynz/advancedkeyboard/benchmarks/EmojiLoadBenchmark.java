@@ -0,0 +1,56 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.emoji.EmojiCatalog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emoji load time over the full Unicode emoji set: parsing the JSON and building the
+ * catalog, as the app falls back to, against opening the compiled catalog from a mapped
+ * file, and the cost of decoding one category on first use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmojiLoadBenchmark {
+    private ByteBuffer compiled;
+    private EmojiCatalog catalog;
+    private int largestCategory;
+
+    @Setup
+    public void setUp() throws IOException {
+        compiled = UnicodeEmoji.mapCompiled(EmojiCatalog.build(UnicodeEmoji.parse()));
+        catalog = EmojiCatalog.read(compiled);
+        for (int i = 1; i < catalog.categoryCount(); i++) {
+            if (catalog.categoryGlyphs(i).size() > catalog.categoryGlyphs(largestCategory).size()) {
+                largestCategory = i;
+            }
+        }
+    }
+
+    @Benchmark
+    public EmojiCatalog parseJson() throws IOException {
+        return EmojiCatalog.build(UnicodeEmoji.parse());
+    }
+
+    @Benchmark
+    public EmojiCatalog readCompiled() throws IOException {
+        return EmojiCatalog.read(compiled.duplicate());
+    }
+
+    @Benchmark
+    public List<String> decodeLargestCategory() {
+        return catalog.categoryGlyphs(largestCategory);
+    }
+}
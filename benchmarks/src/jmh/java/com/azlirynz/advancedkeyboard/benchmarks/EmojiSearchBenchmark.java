@@ -0,0 +1,79 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.emoji.Emoji;
+import com.azlirynz.advancedkeyboard.emoji.EmojiIndex;
+import com.azlirynz.advancedkeyboard.emoji.EmojiList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one emoji search over the full Unicode emoji set (see {@link UnicodeEmoji}),
+ * by name word prefix or by shortcode prefix.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmojiSearchBenchmark {
+    private static final int LIMIT = 8;
+
+    @Param({"1", "2", "3", "5"})
+    public int prefixLength;
+
+    @Param({"false", "true"})
+    public boolean shortcode;
+
+    private EmojiIndex index;
+    private String[] queries;
+    private final int[] found = new int[LIMIT];
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Emoji> emojis = EmojiList.flatten(UnicodeEmoji.parse());
+        index = EmojiIndex.build(emojis);
+        queries = queries(emojis, 42);
+    }
+
+    // Prefixes of words of random emoji names, or of their shortcodes after the colon.
+    private String[] queries(List<Emoji> emojis, long seed) {
+        Random random = new Random(seed);
+        String[] queries = new String[SyntheticDictionary.QUERY_COUNT];
+        int count = 0;
+        while (count < queries.length) {
+            Emoji emoji = emojis.get(random.nextInt(emojis.size()));
+            List<String> candidates = new ArrayList<>();
+            if (shortcode) {
+                candidates.addAll(emoji.getShortcodes());
+            } else if (emoji.getName() != null) {
+                for (String word : emoji.getName().split("[^a-z0-9]+")) {
+                    candidates.add(word);
+                }
+            }
+            if (candidates.isEmpty()) continue;
+            String term = candidates.get(random.nextInt(candidates.size()));
+            if (term.length() < prefixLength) continue;
+            queries[count++] = (shortcode ? ":" : "") + term.substring(0, prefixLength);
+        }
+        return queries;
+    }
+
+    @Benchmark
+    public int search() {
+        String query = queries[next];
+        next = (next + 1) % queries.length;
+        return index.search(query, LIMIT, found);
+    }
+}
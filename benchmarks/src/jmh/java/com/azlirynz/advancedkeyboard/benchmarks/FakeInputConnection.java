@@ -0,0 +1,75 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+/**
+ * The part of an editor's {@code InputConnection} the keyboard uses, kept in a string
+ * buffer with a composing region and a cursor, and counting the calls that would each
+ * be an IPC to the app on a device.
+ */
+final class FakeInputConnection {
+    private final StringBuilder text = new StringBuilder();
+    private int composingStart = -1;
+    private int composingEnd = -1;
+    private int cursor;
+    private long calls;
+
+    boolean setComposingText(CharSequence newText, int newCursorPosition) {
+        calls++;
+        int start = replace(newText);
+        composingStart = start;
+        composingEnd = start + newText.length();
+        return true;
+    }
+
+    boolean commitText(CharSequence newText, int newCursorPosition) {
+        calls++;
+        replace(newText);
+        composingStart = -1;
+        composingEnd = -1;
+        return true;
+    }
+
+    boolean finishComposingText() {
+        calls++;
+        composingStart = -1;
+        composingEnd = -1;
+        return true;
+    }
+
+    boolean deleteSurroundingText(int beforeLength, int afterLength) {
+        calls++;
+        int start = Math.max(0, cursor - beforeLength);
+        int end = Math.min(text.length(), cursor + afterLength);
+        text.delete(start, end);
+        cursor = start;
+        composingStart = -1;
+        composingEnd = -1;
+        return true;
+    }
+
+    /**
+     * Stands in for the down and up events of the enter key, two calls.
+     */
+    boolean sendEnter() {
+        calls += 2;
+        text.insert(cursor, '\n');
+        cursor++;
+        return true;
+    }
+
+    long getCallCount() {
+        return calls;
+    }
+
+    String getText() {
+        return text.toString();
+    }
+
+    // Replaces the composing region, or inserts at the cursor, and moves the cursor after.
+    private int replace(CharSequence newText) {
+        int start = composingStart >= 0 ? composingStart : cursor;
+        int end = composingStart >= 0 ? composingEnd : cursor;
+        text.replace(start, end, newText.toString());
+        cursor = start + newText.length();
+        return start;
+    }
+}
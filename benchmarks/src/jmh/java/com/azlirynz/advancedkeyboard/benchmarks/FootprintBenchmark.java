@@ -0,0 +1,67 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.LanguageModel;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.Suggester;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.IOException;
+
+/**
+ * Retained heap of the loaded dictionary, measured by walking the object graph once.
+ * The sizes are reported as secondary results next to the (meaningless) run time, along
+ * with the size the trie reports for itself, which leaves out only object headers.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(1)
+public class FootprintBenchmark {
+    // As many words as the app keeps resident per locale.
+    private static final int HOT_WORDS = 5000;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long wordListBytes;
+        public long builtTrieBytes;
+        public long reportedTrieBytes;
+        public long hotTierBytes;
+        public long mappedTrieHeapBytes;
+        public long suggesterBytes;
+    }
+
+    @Benchmark
+    public void measure(Footprint footprint) throws IOException {
+        WordList words = SyntheticDictionary.parseWordList();
+        PackedTrie built = PackedTrie.build(words);
+        PackedTrie mapped = PackedTrie.read(SyntheticDictionary.mapCompiled(built));
+
+        // Exercise the search buffers so they have grown to a typical size.
+        Suggester suggester = new Suggester();
+        suggester.setLanguageModels(new LanguageModel("synthetic", built, null), null);
+        for (String query : SyntheticDictionary.misspellings(words, built, 2, 42)) {
+            suggester.getSuggestions(null, "", query, Cancellation.NONE);
+        }
+
+        footprint.wordListBytes = GraphLayout.parseInstance(words).totalSize();
+        footprint.builtTrieBytes = GraphLayout.parseInstance(built).totalSize();
+        footprint.reportedTrieBytes = built.sizeInBytes();
+        footprint.hotTierBytes = GraphLayout.parseInstance(built.mostFrequent(HOT_WORDS)).totalSize();
+        footprint.mappedTrieHeapBytes = GraphLayout.parseInstance(mapped).totalSize();
+        footprint.suggesterBytes = GraphLayout.parseInstance(suggester)
+                .subtract(GraphLayout.parseInstance(built)).totalSize();
+    }
+}
@@ -0,0 +1,57 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.GesturePath;
+import com.azlirynz.advancedkeyboard.dictionary.LanguageModel;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.Suggester;
+import com.azlirynz.advancedkeyboard.dictionary.SyntheticGestures;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of decoding one glide-typed word. The budget is 20 ms per gesture with a
+ * 100,000-word dictionary, so the result has to appear as the finger lifts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GestureBenchmark {
+    // Gestures are traced for words among the most frequent, as typed text mostly is.
+    private static final int TRACED_RANGE = 20000;
+
+    @Param({"10000", "100000"})
+    public int wordCount;
+
+    private final Suggester suggester = new Suggester();
+    private GesturePath[] gestures;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        WordList words = SyntheticDictionary.extendedWordList(wordCount, 7);
+        PackedTrie trie = PackedTrie.build(words);
+        suggester.setLanguageModels(new LanguageModel("synthetic", trie, null), null);
+        suggester.setGestureDecoder(SyntheticGestures.decoder());
+        gestures = SyntheticGestures.trace(words, TRACED_RANGE, SyntheticDictionary.QUERY_COUNT, 42);
+    }
+
+    @Benchmark
+    public List<String> getGestureSuggestions() {
+        GesturePath gesture = gestures[next];
+        next = (next + 1) % gestures.length;
+        return suggester.getGestureSuggestions(gesture, Cancellation.NONE);
+    }
+}
@@ -0,0 +1,84 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.LanguageModel;
+import com.azlirynz.advancedkeyboard.dictionary.LearnedWords;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.Suggester;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups from several threads while one thread keeps learning new words, each of which
+ * publishes a new snapshot. Readers never lock, so their latency should stay close to
+ * {@link SuggestionBenchmark}'s.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LearningBenchmark {
+    private static final int LEARNED_VOCABULARY = 1000;
+
+    @State(Scope.Group)
+    public static class Shared {
+        final LearnedWords learnedWords = new LearnedWords();
+        WordList words;
+        PackedTrie trie;
+        String[] prefixes;
+
+        @Setup
+        public void setUp() throws IOException {
+            words = SyntheticDictionary.parseWordList();
+            trie = PackedTrie.build(words);
+            prefixes = SyntheticDictionary.prefixes(words, 3, 42);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        final Suggester suggester = new Suggester();
+        int next;
+
+        @Setup
+        public void setUp(Shared shared) {
+            suggester.setLanguageModels(new LanguageModel("synthetic", shared.trie, null), null);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        int next;
+    }
+
+    @Benchmark
+    @Group("learning")
+    @GroupThreads(3)
+    public List<String> lookup(Shared shared, Reader reader) {
+        String prefix = shared.prefixes[reader.next];
+        reader.next = (reader.next + 1) % shared.prefixes.length;
+        return reader.suggester.getSuggestions(
+                shared.learnedWords.snapshot(), "", prefix, Cancellation.NONE);
+    }
+
+    @Benchmark
+    @Group("learning")
+    @GroupThreads(1)
+    public void learn(Shared shared, Writer writer) {
+        // Learned words are drawn from the dictionary so they compete with its completions,
+        // and from a limited vocabulary, as a real user dictionary stays small.
+        shared.learnedWords.learn(shared.words.word(writer.next));
+        writer.next = (writer.next + 7) % LEARNED_VOCABULARY;
+    }
+}
@@ -0,0 +1,80 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.StagedLoader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dictionary load time: parsing the JSON word list and building the trie, in one go or
+ * in stages as the app falls back to, against opening the compiled trie from a mapped
+ * file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoadBenchmark {
+    private static final StagedLoader.Listener IGNORE_STAGES = new StagedLoader.Listener() {
+        @Override
+        public void onStage(PackedTrie trie, boolean complete) {
+        }
+    };
+
+    private ByteBuffer compiled;
+
+    @Setup
+    public void setUp() throws IOException {
+        compiled = SyntheticDictionary.mapCompiled(SyntheticDictionary.buildTrie());
+    }
+
+    @Benchmark
+    public PackedTrie parseWordList() throws IOException {
+        return SyntheticDictionary.buildTrie();
+    }
+
+    @Benchmark
+    public PackedTrie stagedWordList() throws IOException {
+        try (Reader reader = SyntheticDictionary.openWordList()) {
+            return StagedLoader.load(reader, IGNORE_STAGES, Cancellation.NONE);
+        }
+    }
+
+    /**
+     * Time until the first stage is published and lookups can start.
+     */
+    @Benchmark
+    public PackedTrie stagedCoreSet() throws IOException {
+        final PackedTrie[] core = new PackedTrie[1];
+        try (Reader reader = SyntheticDictionary.openWordList()) {
+            StagedLoader.load(reader, new StagedLoader.Listener() {
+                @Override
+                public void onStage(PackedTrie trie, boolean complete) {
+                    core[0] = trie;
+                }
+            }, new Cancellation() {
+                @Override
+                public boolean isCancelled() {
+                    return true;
+                }
+            });
+        }
+        return core[0];
+    }
+
+    @Benchmark
+    public PackedTrie readCompiled() throws IOException {
+        return PackedTrie.read(compiled.duplicate());
+    }
+}
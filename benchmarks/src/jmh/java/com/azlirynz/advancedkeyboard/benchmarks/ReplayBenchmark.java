@@ -0,0 +1,53 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.LanguageModel;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.Suggester;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+import com.azlirynz.advancedkeyboard.trace.TypingTrace;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of the time from a replayed key or pick to its suggestions, over the
+ * synthetic corpus; see {@link TraceReplay}. The trace repeats, and so do the words
+ * learned from it, as they would for a user typing the same text every day.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReplayBenchmark {
+    private TraceReplay replay;
+    private TypingTrace trace;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        WordList words = SyntheticDictionary.parseWordList();
+        Suggester suggester = new Suggester();
+        suggester.setLanguageModels(new LanguageModel("synthetic", PackedTrie.build(words), null), null);
+        trace = SyntheticTraces.generate(words, SyntheticTraces.WORD_COUNT, 42);
+        replay = new TraceReplay(suggester);
+    }
+
+    @TearDown
+    public void tearDown() {
+        replay.shutdown();
+    }
+
+    @Benchmark
+    public void replayEvent() throws InterruptedException {
+        replay.replayEvent(trace, next);
+        next = (next + 1) % trace.size();
+    }
+}
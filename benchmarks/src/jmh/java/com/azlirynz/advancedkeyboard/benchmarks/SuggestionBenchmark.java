@@ -0,0 +1,51 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.LanguageModel;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.Suggester;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one suggestion lookup for a prefix of a given length. Consecutive queries
+ * are unrelated words, so little of the incremental search state carries over.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SuggestionBenchmark {
+    @Param({"1", "2", "3", "5", "8"})
+    public int prefixLength;
+
+    private final Suggester suggester = new Suggester();
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        WordList words = SyntheticDictionary.parseWordList();
+        PackedTrie trie = PackedTrie.build(words);
+        suggester.setLanguageModels(new LanguageModel("synthetic", trie, null), null);
+        prefixes = SyntheticDictionary.prefixes(words, prefixLength, 42);
+    }
+
+    @Benchmark
+    public List<String> getSuggestions() {
+        String prefix = prefixes[next];
+        next = (next + 1) % prefixes.length;
+        return suggester.getSuggestions(null, "", prefix, Cancellation.NONE);
+    }
+}
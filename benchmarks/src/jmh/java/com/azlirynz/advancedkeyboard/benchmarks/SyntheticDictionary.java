@@ -0,0 +1,130 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The checked-in synthetic word list and inputs derived from it.
+ *
+ * The list holds 10,000 generated pseudo-words in rank order, so it has the shape of a
+ * real dictionary without tying results to a particular language. All derived inputs use
+ * fixed seeds so every run sees the same queries.
+ */
+final class SyntheticDictionary {
+    static final String WORD_LIST = "/synthetic_words.json";
+    static final int QUERY_COUNT = 1024;
+
+    private SyntheticDictionary() {
+    }
+
+    static Reader openWordList() {
+        InputStream in = SyntheticDictionary.class.getResourceAsStream(WORD_LIST);
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    static WordList parseWordList() throws IOException {
+        try (Reader reader = openWordList()) {
+            return WordList.parse(reader);
+        }
+    }
+
+    /**
+     * The list grown to {@code size} words by joining random pairs of its words, as a
+     * stand-in for a full-size dictionary. The added words rank below the original ones.
+     */
+    static WordList extendedWordList(int size, long seed) throws IOException {
+        WordList words = parseWordList();
+        if (size <= words.size()) return words;
+        WordList extended = new WordList();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < words.size(); i++) {
+            extended.add(words.word(i), words.frequency(i));
+            seen.add(words.word(i));
+        }
+        Random random = new Random(seed);
+        while (extended.size() < size) {
+            String word = words.word(random.nextInt(words.size())) + words.word(random.nextInt(words.size()));
+            if (seen.add(word)) {
+                extended.add(word, 1 + random.nextInt(WordList.MAX_FREQUENCY / 2));
+            }
+        }
+        return extended;
+    }
+
+    static PackedTrie buildTrie() throws IOException {
+        return PackedTrie.build(parseWordList());
+    }
+
+    /**
+     * Writes the compiled trie to a temporary file and maps it, as the app maps it out of
+     * the APK.
+     */
+    static ByteBuffer mapCompiled(PackedTrie trie) throws IOException {
+        File file = File.createTempFile("synthetic", ".dict");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            trie.writeTo(out.getChannel());
+        }
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Prefixes of {@code length} characters of words drawn uniformly from the list.
+     */
+    static String[] prefixes(WordList words, int length, long seed) {
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < words.size(); i++) {
+            if (words.word(i).length() >= length) {
+                candidates.add(words.word(i).substring(0, length));
+            }
+        }
+        Random random = new Random(seed);
+        String[] prefixes = new String[QUERY_COUNT];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = candidates.get(random.nextInt(candidates.size()));
+        }
+        return prefixes;
+    }
+
+    /**
+     * Words with {@code edits} letters replaced such that no dictionary word starts with
+     * the result, so lookups fall through to corrections.
+     */
+    static String[] misspellings(WordList words, PackedTrie trie, int edits, long seed) {
+        Random random = new Random(seed);
+        String[] misspellings = new String[QUERY_COUNT];
+        int count = 0;
+        while (count < misspellings.length) {
+            String word = words.word(random.nextInt(words.size()));
+            if (word.length() < 4 + edits) continue;
+            char[] chars = word.toCharArray();
+            for (int e = 0; e < edits; e++) {
+                // Keep the first letter, as people rarely get it wrong.
+                chars[1 + random.nextInt(chars.length - 1)] = (char) ('a' + random.nextInt(26));
+            }
+            String misspelled = new String(chars);
+            if (trie.find(misspelled) == PackedTrie.NO_NODE) {
+                misspellings[count++] = misspelled;
+            }
+        }
+        return misspellings;
+    }
+}
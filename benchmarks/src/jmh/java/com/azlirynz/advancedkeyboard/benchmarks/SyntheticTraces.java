@@ -0,0 +1,87 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.LanguageModel;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.Suggester;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+import com.azlirynz.advancedkeyboard.trace.TypingTrace;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A typing trace made up over a word list, for when no recorded one is at hand.
+ *
+ * The simulated typist writes sentences of words drawn mostly from the frequent end of
+ * the list, shifts at the start of each, now and then hits a wrong letter and backspaces
+ * over it, and for some words picks the word from the strip as soon as it is offered.
+ */
+final class SyntheticTraces {
+    static final int WORD_COUNT = 2000;
+
+    // Words are drawn from this many of the most frequent, log-uniformly by rank.
+    private static final int WORD_RANGE = 5000;
+    private static final double TYPO_RATE = 0.03;
+    private static final double STRIP_USE_RATE = 0.5;
+    private static final int MEAN_SENTENCE_LENGTH = 12;
+    private static final int SENTENCES_PER_PARAGRAPH = 5;
+
+    private SyntheticTraces() {
+    }
+
+    static TypingTrace generate(WordList words, int wordCount, long seed) {
+        Suggester suggester = new Suggester();
+        suggester.setLanguageModels(new LanguageModel("synthetic", PackedTrie.build(words), null), null);
+        Random random = new Random(seed);
+        TypingTrace trace = new TypingTrace();
+        String lastWord = "";
+        String previous = "";
+        boolean sentenceStart = true;
+        for (int n = 0; n < wordCount; n++) {
+            String word = words.word(rank(random, Math.min(WORD_RANGE, words.size())));
+            if (sentenceStart) {
+                trace.addKey(TraceReplay.KEYCODE_SHIFT);
+                sentenceStart = false;
+            }
+            boolean usesStrip = random.nextDouble() < STRIP_USE_RATE;
+            for (int i = 0; i < word.length(); i++) {
+                if (random.nextDouble() < TYPO_RATE) {
+                    trace.addKey('a' + random.nextInt(26));
+                    trace.addKey(TraceReplay.KEYCODE_DELETE);
+                }
+                trace.addKey(word.charAt(i));
+                if (usesStrip && i + 1 < word.length()) {
+                    List<String> shown = suggester.getSuggestions(
+                            null, previous, word.substring(0, i + 1), Cancellation.NONE);
+                    if (shown.contains(word)) {
+                        trace.addPick(word);
+                        break;
+                    }
+                }
+            }
+
+            if (random.nextInt(MEAN_SENTENCE_LENGTH) == 0) {
+                trace.addKey('.');
+                if (random.nextInt(SENTENCES_PER_PARAGRAPH) == 0) {
+                    trace.addKey(TraceReplay.KEYCODE_DONE);
+                } else {
+                    trace.addKey(' ');
+                }
+                lastWord = "";
+                previous = "";
+                sentenceStart = true;
+            } else {
+                trace.addKey(' ');
+                previous = lastWord.isEmpty() ? word : lastWord + " " + word;
+                lastWord = word;
+            }
+        }
+        return trace;
+    }
+
+    // Log-uniform over [0, range), which puts most draws among the top ranks.
+    private static int rank(Random random, int range) {
+        return (int) Math.pow(range, random.nextDouble()) - 1;
+    }
+}
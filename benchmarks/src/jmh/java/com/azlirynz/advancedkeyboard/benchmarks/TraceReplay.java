@@ -0,0 +1,398 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.GesturePath;
+import com.azlirynz.advancedkeyboard.dictionary.LanguageModel;
+import com.azlirynz.advancedkeyboard.dictionary.LearnedWords;
+import com.azlirynz.advancedkeyboard.dictionary.NgramModel;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.Suggester;
+import com.azlirynz.advancedkeyboard.dictionary.WordComposer;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+import com.azlirynz.advancedkeyboard.metrics.LatencyHistogram;
+import com.azlirynz.advancedkeyboard.suggestions.BackgroundSuggestionScheduler;
+import com.azlirynz.advancedkeyboard.suggestions.SuggestionScheduler;
+import com.azlirynz.advancedkeyboard.trace.TypingTrace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays {@link TypingTrace}s through the steps the keyboard service takes for each key:
+ * characters go into a {@link WordComposer} and a {@link FakeInputConnection}, lookups go
+ * through a {@link BackgroundSuggestionScheduler} to a {@link Suggester}, and committed
+ * words are learned.
+ *
+ * Replay is closed-loop: an event that asks for suggestions waits for them before the
+ * next one, as a typist watching the strip would, so an event's latency runs from the key
+ * to its suggestions being delivered. Shortcodes, emoji and gestures are not replayed.
+ *
+ * Run as a program it replays the given trace files, or directories of them, or else a
+ * synthetic corpus, once to warm up and once measured, and prints keystrokes per second,
+ * latency percentiles, allocation per keystroke and the suggestion hit rate: how often a
+ * committed word had been offered before it was fully typed.
+ *
+ * <pre>TraceReplay [--words words.json] [--ngrams ngrams.json] [trace or directory...]</pre>
+ */
+final class TraceReplay implements SuggestionScheduler.Callback {
+    // Key codes of the keyboard layouts.
+    static final int KEYCODE_SHIFT = -1;
+    static final int KEYCODE_DONE = -4;
+    static final int KEYCODE_DELETE = -5;
+
+    private static final String TRACE_SUFFIX = ".trace";
+    private static final long DELIVERY_TIMEOUT_SECONDS = 10;
+
+    private final Suggester suggester;
+    private final LearnedWords learnedWords = new LearnedWords();
+    private final WordComposer wordComposer = new WordComposer();
+    private final FakeInputConnection ic = new FakeInputConnection();
+    private final BlockingQueue<Runnable> deliveries = new LinkedBlockingQueue<>();
+    private final SuggestionScheduler scheduler;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final int[] keyCodes = new int[1];
+    // The strips shown while typing the current word, and how many letters each was for.
+    private final List<List<String>> strips = new ArrayList<>();
+    private int[] stripLengths = new int[32];
+    private List<String> shown = Collections.emptyList();
+    private Thread worker;
+    private boolean awaiting;
+    private boolean shifted;
+    private boolean capsLock;
+    private String lastWord = "";
+    private String wordBeforeLast = "";
+    private long keystrokes;
+    private long committedWords;
+    private long offeredWords;
+
+    TraceReplay(Suggester suggester) {
+        this.suggester = suggester;
+        ExecutorService lookups = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                worker = new Thread(runnable, "replay-lookup");
+                worker.setDaemon(true);
+                return worker;
+            }
+        });
+        scheduler = new BackgroundSuggestionScheduler(this::lookUp, this, lookups, deliveries::add);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        WordList words = null;
+        File ngrams = null;
+        List<TypingTrace> traces = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--words")) {
+                try (Reader reader = open(new File(args[++i]))) {
+                    words = WordList.parse(reader);
+                }
+            } else if (args[i].equals("--ngrams")) {
+                ngrams = new File(args[++i]);
+            } else {
+                readTraces(new File(args[i]), traces);
+            }
+        }
+        if (words == null) {
+            words = SyntheticDictionary.parseWordList();
+        }
+        PackedTrie trie = PackedTrie.build(words);
+        NgramModel ngramModel = null;
+        if (ngrams != null) {
+            try (Reader reader = open(ngrams)) {
+                ngramModel = NgramModel.parse(trie, reader);
+            }
+        }
+        if (traces.isEmpty()) {
+            traces.add(SyntheticTraces.generate(words, SyntheticTraces.WORD_COUNT, 42));
+        }
+
+        Suggester suggester = new Suggester();
+        suggester.setLanguageModels(new LanguageModel("replay", trie, ngramModel), null);
+        // Learned words change what is suggested, so the measured pass starts afresh.
+        TraceReplay warmUp = new TraceReplay(suggester);
+        for (TypingTrace trace : traces) {
+            warmUp.replay(trace);
+        }
+        warmUp.shutdown();
+
+        TraceReplay replay = new TraceReplay(suggester);
+        long allocatedBefore = replay.allocatedBytes();
+        long start = System.nanoTime();
+        for (TypingTrace trace : traces) {
+            replay.replay(trace);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = replay.allocatedBytes() - allocatedBefore;
+        replay.printReport(System.out, elapsed, allocated);
+        replay.shutdown();
+    }
+
+    private static Reader open(File file) throws IOException {
+        return new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+    }
+
+    private static void readTraces(File file, List<TypingTrace> traces) throws IOException {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files == null) return;
+            Arrays.sort(files);
+            for (File child : files) {
+                if (child.getName().endsWith(TRACE_SUFFIX)) {
+                    readTraces(child, traces);
+                }
+            }
+            return;
+        }
+        TypingTrace trace = new TypingTrace();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            trace.readFrom(in);
+        }
+        traces.add(trace);
+    }
+
+    void replay(TypingTrace trace) throws InterruptedException {
+        for (int i = 0; i < trace.size(); i++) {
+            replayEvent(trace, i);
+        }
+    }
+
+    /**
+     * Replays one event and waits for any suggestions it asked for.
+     */
+    void replayEvent(TypingTrace trace, int event) throws InterruptedException {
+        long start = System.nanoTime();
+        switch (trace.getType(event)) {
+            case TypingTrace.KEY:
+                keystrokes++;
+                onKey(trace.getCode(event));
+                break;
+            case TypingTrace.PICK:
+                onPick(trace.getWord(event));
+                break;
+            default:
+                onReset();
+                return;
+        }
+        awaitSuggestions();
+        latency.record(System.nanoTime() - start);
+    }
+
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private List<String> lookUp(CharSequence previousWords, CharSequence typedWord,
+                                GesturePath gesture, Cancellation cancellation) {
+        return suggester.getSuggestions(learnedWords.snapshot(), previousWords, typedWord, cancellation);
+    }
+
+    private void awaitSuggestions() throws InterruptedException {
+        while (awaiting) {
+            Runnable delivery = deliveries.poll(DELIVERY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (delivery == null) {
+                throw new IllegalStateException("No suggestions after " + DELIVERY_TIMEOUT_SECONDS + " s");
+            }
+            delivery.run();
+        }
+    }
+
+    @Override
+    public void onSuggestions(List<String> suggestions) {
+        awaiting = false;
+        shown = suggestions;
+        if (wordComposer.size() == 0) return;
+        if (strips.size() == stripLengths.length) {
+            stripLengths = Arrays.copyOf(stripLengths, stripLengths.length * 2);
+        }
+        stripLengths[strips.size()] = wordComposer.size();
+        strips.add(suggestions);
+    }
+
+    private void onKey(int code) {
+        switch (code) {
+            case KEYCODE_DELETE:
+                handleBackspace();
+                break;
+            case KEYCODE_SHIFT:
+                handleShift();
+                break;
+            case KEYCODE_DONE:
+                ic.finishComposingText();
+                if (wordComposer.size() > 0) {
+                    learnComposedWord();
+                }
+                ic.sendEnter();
+                break;
+            default:
+                // Mode, emoji and language keys do not touch the text.
+                if (code > 0) {
+                    handleCharacter((char) code);
+                }
+        }
+    }
+
+    private void handleBackspace() {
+        if (wordComposer.size() > 0) {
+            wordComposer.deleteLast();
+            ic.setComposingText(wordComposer.toString(), 1);
+            updateSuggestions();
+            return;
+        }
+        ic.deleteSurroundingText(1, 0);
+        resetContext();
+        updateSuggestions();
+    }
+
+    private void handleShift() {
+        if (shifted && capsLock) {
+            shifted = false;
+            capsLock = false;
+        } else if (shifted) {
+            capsLock = true;
+        } else {
+            shifted = true;
+        }
+    }
+
+    private void handleCharacter(char code) {
+        if (Character.isLetter(code)) {
+            code = shifted ? Character.toUpperCase(code) : Character.toLowerCase(code);
+            if (!capsLock) {
+                shifted = false;
+            }
+            keyCodes[0] = code;
+            wordComposer.add(code, keyCodes);
+            ic.setComposingText(wordComposer.toString(), 1);
+            updateSuggestions();
+            return;
+        }
+        commitAfterWord(String.valueOf(code));
+        if (code == ' ') {
+            updateSuggestions();
+        } else {
+            resetContext();
+            clearSuggestions();
+        }
+    }
+
+    private void commitAfterWord(CharSequence text) {
+        if (wordComposer.size() == 0) {
+            ic.commitText(text, 1);
+            return;
+        }
+        ic.commitText(wordComposer.toString() + text, 1);
+        learnComposedWord();
+    }
+
+    private void learnComposedWord() {
+        String word = wordComposer.getLowerCaseWord().toString();
+        countWord(wasOffered(word));
+        learnedWords.learn(word);
+        commitToContext(word);
+        wordComposer.reset();
+    }
+
+    private void onPick(String word) {
+        ic.commitText(word, 1);
+        String lowerCase = word.toLowerCase(Locale.ROOT);
+        countWord(shown.contains(word));
+        learnedWords.learn(lowerCase);
+        commitToContext(lowerCase);
+        wordComposer.reset();
+        clearSuggestions();
+    }
+
+    // The editor changed under the keyboard, as the service sees on a selection update.
+    private void onReset() {
+        ic.finishComposingText();
+        wordComposer.reset();
+        strips.clear();
+        resetContext();
+        clearSuggestions();
+    }
+
+    private boolean wasOffered(String word) {
+        for (int i = 0; i < strips.size(); i++) {
+            if (stripLengths[i] < word.length() && strips.get(i).contains(word)) return true;
+        }
+        return false;
+    }
+
+    private void countWord(boolean offered) {
+        committedWords++;
+        if (offered) {
+            offeredWords++;
+        }
+        strips.clear();
+    }
+
+    private void updateSuggestions() {
+        awaiting = true;
+        scheduler.request(predictionContext(), wordComposer.getLowerCaseWord());
+    }
+
+    private void clearSuggestions() {
+        awaiting = false;
+        scheduler.cancel();
+        shown = Collections.emptyList();
+    }
+
+    private void commitToContext(String word) {
+        wordBeforeLast = lastWord;
+        lastWord = word;
+    }
+
+    private void resetContext() {
+        lastWord = "";
+        wordBeforeLast = "";
+    }
+
+    private String predictionContext() {
+        return wordBeforeLast.isEmpty() ? lastWord : wordBeforeLast + " " + lastWord;
+    }
+
+    // Bytes allocated so far by the replaying thread and the lookup thread.
+    private long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        if (worker != null) {
+            bytes += threads.getThreadAllocatedBytes(worker.getId());
+        }
+        return bytes;
+    }
+
+    private void printReport(PrintStream out, long elapsedNanos, long allocatedBytes) {
+        long events = latency.count();
+        out.printf(Locale.ROOT, "keystrokes          %d%n", keystrokes);
+        out.printf(Locale.ROOT, "keystrokes/s        %.0f%n", keystrokes * 1e9 / elapsedNanos);
+        out.printf(Locale.ROOT, "latency p50 ms      %.3f%n", latency.percentile(50) / 1e6);
+        out.printf(Locale.ROOT, "latency p99 ms      %.3f%n", latency.percentile(99) / 1e6);
+        out.printf(Locale.ROOT, "latency p99.9 ms    %.3f%n", latency.percentile(99.9) / 1e6);
+        out.printf(Locale.ROOT, "latency max ms      %.3f%n", latency.max() / 1e6);
+        out.printf(Locale.ROOT, "bytes/keystroke     %.0f%n", allocatedBytes / (double) keystrokes);
+        out.printf(Locale.ROOT, "ipc calls/event     %.2f%n", ic.getCallCount() / (double) events);
+        out.printf(Locale.ROOT, "suggestion hit rate %.1f%% of %d words%n",
+                100.0 * offeredWords / committedWords, committedWords);
+    }
+}
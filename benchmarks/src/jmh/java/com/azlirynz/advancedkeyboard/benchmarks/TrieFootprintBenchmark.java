@@ -0,0 +1,55 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.NodeTrie;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.IOException;
+
+/**
+ * Node count and retained heap of the packed trie against the node-object trie it
+ * replaced, built from the same word list, up to the size of a full dictionary. Like
+ * {@link FootprintBenchmark}, the sizes are secondary results of a single shot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(1)
+public class TrieFootprintBenchmark {
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long nodeTrieNodes;
+        public long nodeTrieBytes;
+        public long packedTrieNodes;
+        public long packedTrieBytes;
+    }
+
+    @Param({"10000", "200000"})
+    public int wordCount;
+
+    @Benchmark
+    public void measure(Footprint footprint) throws IOException {
+        WordList words = SyntheticDictionary.extendedWordList(wordCount, 42);
+        NodeTrie nodeTrie = NodeTrie.build(words);
+        PackedTrie packed = PackedTrie.build(words);
+
+        footprint.nodeTrieNodes = nodeTrie.nodeCount();
+        footprint.nodeTrieBytes = GraphLayout.parseInstance(nodeTrie).totalSize();
+        footprint.packedTrieNodes = packed.nodeCount();
+        footprint.packedTrieBytes = GraphLayout.parseInstance(packed).totalSize();
+    }
+}
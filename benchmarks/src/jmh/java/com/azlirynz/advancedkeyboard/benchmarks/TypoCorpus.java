@@ -0,0 +1,67 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.SyntheticGestures;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+
+import java.util.Random;
+
+/**
+ * Words as they were meant and as they were mistyped on a QWERTY keyboard, generated
+ * from a fixed seed so every run corrects the same typos.
+ *
+ * Most typos hit a neighbouring key instead of the right one; the rest leave a letter
+ * out, add a neighbouring key's letter, swap two letters or hit two neighbours. Words
+ * are drawn log-uniformly by rank from the frequent end of the list, and typos that
+ * happen to spell a dictionary word are left out, as no correction can catch them.
+ */
+final class TypoCorpus {
+    static final int SIZE = 1000;
+    // Words are drawn from this many of the most frequent.
+    private static final int WORD_RANGE = 5000;
+
+    final String[] intended = new String[SIZE];
+    final String[] typed = new String[SIZE];
+
+    private TypoCorpus() {
+    }
+
+    static TypoCorpus generate(WordList words, PackedTrie trie, long seed) {
+        Random random = new Random(seed);
+        int range = Math.min(WORD_RANGE, words.size());
+        TypoCorpus corpus = new TypoCorpus();
+        int count = 0;
+        while (count < SIZE) {
+            String word = words.word((int) Math.pow(range, random.nextDouble()) - 1);
+            if (word.length() < 3) continue;
+            String typo = typo(word, random);
+            if (!trie.contains(typo)) {
+                corpus.intended[count] = word;
+                corpus.typed[count] = typo;
+                count++;
+            }
+        }
+        return corpus;
+    }
+
+    private static String typo(String word, Random random) {
+        StringBuilder typo = new StringBuilder(word);
+        int at = random.nextInt(word.length());
+        int kind = random.nextInt(10);
+        if (kind < 5) {
+            typo.setCharAt(at, SyntheticGestures.neighbour(word.charAt(at), random));
+        } else if (kind < 6) {
+            typo.deleteCharAt(at);
+        } else if (kind < 8) {
+            typo.insert(at, SyntheticGestures.neighbour(word.charAt(at), random));
+        } else if (kind < 9 && at + 1 < word.length()) {
+            typo.setCharAt(at, word.charAt(at + 1));
+            typo.setCharAt(at + 1, word.charAt(at));
+        } else {
+            int other = (at + 1 + random.nextInt(word.length() - 1)) % word.length();
+            typo.setCharAt(at, SyntheticGestures.neighbour(word.charAt(at), random));
+            typo.setCharAt(other, SyntheticGestures.neighbour(word.charAt(other), random));
+        }
+        return typo.toString();
+    }
+}
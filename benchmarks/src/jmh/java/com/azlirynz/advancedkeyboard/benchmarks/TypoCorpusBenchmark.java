@@ -0,0 +1,88 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.KeyProximity;
+import com.azlirynz.advancedkeyboard.dictionary.LanguageModel;
+import com.azlirynz.advancedkeyboard.dictionary.PackedTrie;
+import com.azlirynz.advancedkeyboard.dictionary.Suggester;
+import com.azlirynz.advancedkeyboard.dictionary.SyntheticGestures;
+import com.azlirynz.advancedkeyboard.dictionary.WordList;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and accuracy of correcting the {@link TypoCorpus}, with substitutions costed
+ * uniformly or by QWERTY key distance.
+ *
+ * Each operation looks up one typo. Next to the time per lookup, the secondary results
+ * count the typos looked up and how many of them had their intended word suggested first
+ * or among the first three, the strip's visible slots; accuracy is either count over
+ * {@code typos}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TypoCorpusBenchmark {
+    private static final int VISIBLE_SUGGESTIONS = 3;
+
+    @Param({"uniform", "qwerty"})
+    public String keyProximity;
+
+    @Param({"10000", "200000"})
+    public int wordCount;
+
+    private final Suggester suggester = new Suggester();
+    private TypoCorpus corpus;
+    private int next;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Accuracy {
+        public long typos;
+        public long correctedFirst;
+        public long correctedVisible;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            typos = 0;
+            correctedFirst = 0;
+            correctedVisible = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        WordList words = SyntheticDictionary.extendedWordList(wordCount, 42);
+        PackedTrie trie = PackedTrie.build(words);
+        suggester.setLanguageModels(new LanguageModel("synthetic", trie, null), null);
+        suggester.setKeyProximity(keyProximity.equals("qwerty")
+                ? SyntheticGestures.keyProximity() : KeyProximity.UNIFORM);
+        corpus = TypoCorpus.generate(words, trie, 42);
+    }
+
+    @Benchmark
+    public List<String> correct(Accuracy accuracy) {
+        int typo = next;
+        next = (next + 1) % TypoCorpus.SIZE;
+        List<String> suggestions = suggester.getSuggestions(
+                null, "", corpus.typed[typo], Cancellation.NONE);
+        int rank = suggestions.indexOf(corpus.intended[typo]);
+        accuracy.typos++;
+        if (rank == 0) accuracy.correctedFirst++;
+        if (rank >= 0 && rank < VISIBLE_SUGGESTIONS) accuracy.correctedVisible++;
+        return suggestions;
+    }
+}
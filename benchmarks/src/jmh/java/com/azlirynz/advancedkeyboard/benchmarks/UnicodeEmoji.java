@@ -0,0 +1,49 @@
+package com.azlirynz.advancedkeyboard.benchmarks;
+
+import com.azlirynz.advancedkeyboard.emoji.EmojiCatalog;
+import com.azlirynz.advancedkeyboard.emoji.EmojiList;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The checked-in emoji set: generated from Unicode character names, with skin tone and
+ * gender variants, it holds over 4,000 emojis in the app's JSON format.
+ */
+final class UnicodeEmoji {
+    static final String EMOJI_LIST = "/unicode_emoji.json";
+
+    private UnicodeEmoji() {
+    }
+
+    static List<EmojiList.Category> parse() throws IOException {
+        InputStream in = UnicodeEmoji.class.getResourceAsStream(EMOJI_LIST);
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return EmojiList.parse(reader);
+        }
+    }
+
+    /**
+     * Writes the compiled catalog to a temporary file and maps it, as the app maps it out
+     * of the APK.
+     */
+    static ByteBuffer mapCompiled(EmojiCatalog catalog) throws IOException {
+        File file = File.createTempFile("unicode_emoji", ".cat");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            catalog.writeTo(out.getChannel());
+        }
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
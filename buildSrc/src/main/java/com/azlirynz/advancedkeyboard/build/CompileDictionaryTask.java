@@ -0,0 +1,45 @@
+package com.azlirynz.advancedkeyboard.build;
+
+import com.azlirynz.advancedkeyboard.dictionary.DictionaryCompiler;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.inject.Inject;
+
+/**
+ * Compiles each locale's JSON word list, and its n-gram list if present, into
+ * {@code dictionaries/<locale>/}: generated assets that the keyboard memory-maps at
+ * runtime.
+ */
+@CacheableTask
+public abstract class CompileDictionaryTask extends DefaultTask {
+    @InputDirectory
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract DirectoryProperty getSourceDirectory();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations();
+
+    @TaskAction
+    public void compile() throws IOException {
+        final File output = new File(getOutputDirectory().get().getAsFile(), "dictionaries");
+        // Drop the files of locales that no longer exist.
+        getFileSystemOperations().delete(spec -> spec.delete(output));
+        int count = DictionaryCompiler.compileLocales(getSourceDirectory().get().getAsFile(), output);
+        getLogger().info("Compiled dictionaries for {} locales", count);
+    }
+}
@@ -0,0 +1,38 @@
+package com.azlirynz.advancedkeyboard.build;
+
+import com.azlirynz.advancedkeyboard.emoji.EmojiCatalog;
+import com.azlirynz.advancedkeyboard.emoji.EmojiCompiler;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compiles the JSON emoji data into {@code emoji/emoji.cat}: a generated asset that the
+ * keyboard memory-maps at runtime.
+ */
+@CacheableTask
+public abstract class CompileEmojiTask extends DefaultTask {
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getSource();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    @TaskAction
+    public void compile() throws IOException {
+        File output = new File(getOutputDirectory().get().getAsFile(), "emoji/" + EmojiCompiler.CATALOG);
+        EmojiCatalog catalog = EmojiCompiler.compile(getSource().get().getAsFile(), output);
+        getLogger().info("Compiled {} emojis into {} bytes", catalog.emojiCount(), catalog.sizeInBytes());
+    }
+}
@@ -0,0 +1,15 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+/**
+ * Polled by long-running lookups so a superseded query can stop early.
+ */
+public interface Cancellation {
+    Cancellation NONE = new Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    boolean isCancelled();
+}
@@ -0,0 +1,77 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * Best-first search for the most frequent words below a trie node.
+ *
+ * Subtrees are expanded in order of their cached maximum frequency, so the search
+ * stops as soon as {@code k} words have been popped. Heap entries are packed into
+ * {@code long}s held in a reusable array; an instance is not thread-safe.
+ */
+public final class CompletionSearch {
+    private static final long WORD_BIT = 1L << 31;
+
+    private long[] heap = new long[64];
+    private int size;
+
+    public int topK(PackedTrie trie, int node, int k, int[] out) {
+        size = 0;
+        int found = 0;
+        if (node == PackedTrie.NO_NODE || k <= 0) return 0;
+
+        push(entry(trie.maxFrequency(node), false, node));
+        while (size > 0 && found < k) {
+            long top = pop();
+            int current = Integer.MAX_VALUE - (int) (top & Integer.MAX_VALUE);
+            if ((top & WORD_BIT) != 0) {
+                out[found++] = current;
+                continue;
+            }
+            if (trie.isTerminal(current)) {
+                push(entry(trie.frequency(current), true, current));
+            }
+            for (int child = trie.firstChild(current); child < trie.childEnd(current); child++) {
+                push(entry(trie.maxFrequency(child), false, child));
+            }
+        }
+        return found;
+    }
+
+    // Higher frequency first, then words before subtrees, then shallower nodes.
+    private static long entry(int frequency, boolean word, int node) {
+        return ((long) frequency << 32) | (word ? WORD_BIT : 0) | (Integer.MAX_VALUE - node);
+    }
+
+    private void push(long value) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= value) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    private long pop() {
+        long top = heap[0];
+        long last = heap[--size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (last >= heap[child]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+}
@@ -0,0 +1,91 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Build-time conversion of the JSON word list and n-gram sources into the binary
+ * {@link PackedTrie} and {@link NgramModel} formats.
+ */
+public final class DictionaryCompiler {
+    private DictionaryCompiler() {
+    }
+
+    public static PackedTrie compile(File source, File output) throws IOException {
+        PackedTrie trie;
+        try (Reader reader = new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8)) {
+            trie = PackedTrie.build(WordList.parse(reader));
+        }
+        ensureParent(output);
+        try (FileOutputStream out = new FileOutputStream(output);
+             FileChannel channel = out.getChannel()) {
+            trie.writeTo(channel);
+        }
+        return trie;
+    }
+
+    public static NgramModel compileNgrams(PackedTrie trie, File source, File output) throws IOException {
+        NgramModel model;
+        try (Reader reader = new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8)) {
+            model = NgramModel.parse(trie, reader);
+        }
+        ensureParent(output);
+        try (FileOutputStream out = new FileOutputStream(output);
+             FileChannel channel = out.getChannel()) {
+            model.writeTo(channel);
+        }
+        return model;
+    }
+
+    /**
+     * Compiles every locale directory under {@code sourceDirectory}, see
+     * {@link LanguageModel}, into a directory of the same name under
+     * {@code outputDirectory}. Returns the number of locales compiled.
+     */
+    public static int compileLocales(File sourceDirectory, File outputDirectory) throws IOException {
+        File[] locales = sourceDirectory.listFiles();
+        if (locales == null) {
+            throw new IOException("Cannot list " + sourceDirectory);
+        }
+        int count = 0;
+        for (File locale : locales) {
+            File words = new File(locale, LanguageModel.WORDS_SOURCE);
+            if (!words.isFile()) continue;
+            File output = new File(outputDirectory, locale.getName());
+            PackedTrie trie = compile(words, new File(output, LanguageModel.WORDS_FILE));
+            File ngrams = new File(locale, LanguageModel.NGRAMS_SOURCE);
+            if (ngrams.isFile()) {
+                compileNgrams(trie, ngrams, new File(output, LanguageModel.NGRAMS_FILE));
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static void ensureParent(File output) throws IOException {
+        File parent = output.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 4) {
+            System.err.println("Usage: DictionaryCompiler <words.json> <output.dict> [<ngrams.json> <ngrams.dict>]");
+            System.exit(2);
+        }
+        PackedTrie trie = compile(new File(args[0]), new File(args[1]));
+        System.out.println("Compiled " + trie.wordCount() + " words into " + trie.nodeCount() + " nodes");
+        if (args.length == 4) {
+            NgramModel model = compileNgrams(trie, new File(args[2]), new File(args[3]));
+            System.out.println("Compiled " + model.bigramCount() + " bigrams and "
+                    + model.trigramCount() + " trigrams");
+        }
+    }
+}
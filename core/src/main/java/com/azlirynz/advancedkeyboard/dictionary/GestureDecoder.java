@@ -0,0 +1,327 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * Turns a gesture traced over the keyboard into the dictionary words it most likely spells.
+ *
+ * The path is resampled to {@link #SAMPLE_COUNT} evenly spaced points in key-sized units.
+ * A word is scored by aligning its letters, in order, to points of the path: each letter
+ * costs the distance from its key to its point, and the points between two letters cost
+ * how far they stray from the straight line between the two keys. The first letter is
+ * pinned to the first point and whatever follows the last letter is charged against its
+ * key, so a word has to start and end where the gesture does.
+ *
+ * The trie is walked one letter per level with a beam: of all the prefixes reached at a
+ * level only the {@link #BEAM_WIDTH} cheapest, weighted by the best frequency below them,
+ * are extended, and a letter whose key the path never comes near cuts its subtree off at
+ * once. Lower-cased letters are looked up as keys; characters without a key, such as an
+ * apostrophe, are passed over for free.
+ *
+ * The key layout is immutable; the search buffers are not, so an instance is not
+ * thread-safe.
+ */
+public final class GestureDecoder {
+    public static final int SAMPLE_COUNT = 48;
+    static final int BEAM_WIDTH = 128;
+    private static final int MAX_WORD_LENGTH = 32;
+    // In key widths: how far the path may stay from a letter's key.
+    private static final float MAX_KEY_DISTANCE = 1.6f;
+    // Cost, in key widths, separating the most and least frequent words.
+    private static final float FREQUENCY_WEIGHT = 3f;
+    // Per point of path between or after letters, relative to a letter's own distance.
+    private static final float PATH_WEIGHT = 0.5f;
+    private static final int TABLE_SIZE = 128;
+    private static final int MAX_RESULTS = Suggester.MAX_SUGGESTIONS;
+
+    // Key centres by character, in key units; NaN for characters without a key.
+    private final float[] keyX;
+    private final float[] keyY;
+    private final float keyWidth;
+    private final float keyHeight;
+
+    private final float[] pathX = new float[SAMPLE_COUNT];
+    private final float[] pathY = new float[SAMPLE_COUNT];
+    // Set by align() alongside the point it returns.
+    private float alignmentCost;
+
+    // The prefixes being extended: trie node, point its last letter is aligned to,
+    // character of the last key passed and cost so far.
+    private int[] nodes = new int[BEAM_WIDTH];
+    private int[] points = new int[BEAM_WIDTH];
+    private char[] keys = new char[BEAM_WIDTH];
+    private float[] costs = new float[BEAM_WIDTH];
+    private int beamSize;
+
+    // The next level, a max-heap of slots by priority so the worst is replaced first.
+    private int[] nextNodes = new int[BEAM_WIDTH];
+    private int[] nextPoints = new int[BEAM_WIDTH];
+    private char[] nextKeys = new char[BEAM_WIDTH];
+    private float[] nextCosts = new float[BEAM_WIDTH];
+    private final float[] priorities = new float[BEAM_WIDTH];
+    private final int[] heap = new int[BEAM_WIDTH];
+    private int heapSize;
+
+    // The best complete words, by ascending score.
+    private final int[] resultNodes = new int[MAX_RESULTS];
+    private final float[] resultScores = new float[MAX_RESULTS];
+    private int resultCount;
+
+    private GestureDecoder(float[] keyX, float[] keyY, float keyWidth, float keyHeight) {
+        this.keyX = keyX;
+        this.keyY = keyY;
+        this.keyWidth = keyWidth;
+        this.keyHeight = keyHeight;
+    }
+
+    /**
+     * Builds the layout from key rectangles. Only keys whose code is an ASCII letter take
+     * part; their average size becomes the unit distances are measured in.
+     */
+    public static GestureDecoder fromKeys(int[] codes, int[] x, int[] y, int[] width, int[] height) {
+        float[] keyX = new float[TABLE_SIZE];
+        float[] keyY = new float[TABLE_SIZE];
+        Arrays.fill(keyX, Float.NaN);
+        Arrays.fill(keyY, Float.NaN);
+        long totalWidth = 0;
+        long totalHeight = 0;
+        int letters = 0;
+        for (int i = 0; i < codes.length; i++) {
+            if (isLetterKey(codes[i])) {
+                totalWidth += width[i];
+                totalHeight += height[i];
+                letters++;
+            }
+        }
+        float keyWidth = letters > 0 ? Math.max(1f, totalWidth / (float) letters) : 1f;
+        float keyHeight = letters > 0 ? Math.max(1f, totalHeight / (float) letters) : 1f;
+        for (int i = 0; i < codes.length; i++) {
+            if (!isLetterKey(codes[i])) continue;
+            char c = Character.toLowerCase((char) codes[i]);
+            keyX[c] = (x[i] + width[i] / 2f) / keyWidth;
+            keyY[c] = (y[i] + height[i] / 2f) / keyHeight;
+        }
+        return new GestureDecoder(keyX, keyY, keyWidth, keyHeight);
+    }
+
+    private static boolean isLetterKey(int code) {
+        return code > 0 && code < TABLE_SIZE && Character.isLetter((char) code);
+    }
+
+    /**
+     * Decodes {@code path} against {@code trie} and offers the best words to
+     * {@code ranked}, with their path cost as distance. Returns false if cancelled.
+     */
+    boolean decode(PackedTrie trie, GesturePath path, RankedWords ranked, Cancellation cancellation) {
+        int count = decode(trie, path, cancellation);
+        if (count < 0) return false;
+        for (int i = 0; i < count; i++) {
+            int node = resultNodes[i];
+            ranked.offer(trie.wordAt(node), Math.round(resultScores[i] * KeyProximity.EDIT_COST),
+                    trie.frequency(node));
+        }
+        return true;
+    }
+
+    /**
+     * Decodes {@code path} against {@code trie} and returns up to {@code limit} words,
+     * best first; null if cancelled.
+     */
+    public String[] decode(PackedTrie trie, GesturePath path, int limit, Cancellation cancellation) {
+        int count = decode(trie, path, cancellation);
+        if (count < 0) return null;
+        String[] words = new String[Math.min(limit, count)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = trie.wordAt(resultNodes[i]);
+        }
+        return words;
+    }
+
+    // Returns the number of results, or -1 if cancelled.
+    private int decode(PackedTrie trie, GesturePath path, Cancellation cancellation) {
+        resultCount = 0;
+        if (path.size() == 0) return 0;
+        path.resample(SAMPLE_COUNT, pathX, pathY);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            pathX[i] /= keyWidth;
+            pathY[i] /= keyHeight;
+        }
+
+        nodes[0] = PackedTrie.ROOT;
+        points[0] = 0;
+        keys[0] = 0;
+        costs[0] = 0;
+        beamSize = 1;
+        for (int depth = 0; depth < MAX_WORD_LENGTH && beamSize > 0; depth++) {
+            if (cancellation.isCancelled()) return -1;
+            heapSize = 0;
+            for (int i = 0; i < beamSize; i++) {
+                extend(trie, nodes[i], points[i], keys[i], costs[i]);
+            }
+            swapBeams();
+        }
+        return resultCount;
+    }
+
+    private void extend(PackedTrie trie, int node, int point, char key, float cost) {
+        for (int child = trie.firstChild(node); child < trie.childEnd(node); child++) {
+            char c = Character.toLowerCase(trie.label(child));
+            int aligned = point;
+            float childCost = cost;
+            char childKey = key;
+            if (c < TABLE_SIZE && !Float.isNaN(keyX[c])) {
+                if (key == 0) {
+                    aligned = 0;
+                    childCost = keyDistance(c, 0);
+                } else {
+                    aligned = align(point, key, c);
+                    childCost += alignmentCost;
+                }
+                if (keyDistance(c, aligned) > MAX_KEY_DISTANCE) continue;
+                childKey = c;
+            } else if (key == 0) {
+                continue;
+            }
+
+            if (trie.isTerminal(child)) {
+                addResult(child, childCost + tailCost(aligned, childKey)
+                        + frequencyCost(trie.frequency(child)));
+            }
+            if (trie.firstChild(child) < trie.childEnd(child)) {
+                offer(child, aligned, childKey, childCost,
+                        childCost + frequencyCost(trie.maxFrequency(child)));
+            }
+        }
+    }
+
+    // Finds the point from `from` on where the path best reaches key `to` coming from key
+    // `from`, leaving its cost in alignmentCost.
+    private int align(int from, char fromKey, char to) {
+        float ax = keyX[fromKey];
+        float ay = keyY[fromKey];
+        float bx = keyX[to];
+        float by = keyY[to];
+        float straying = 0;
+        float best = Float.MAX_VALUE;
+        int bestPoint = from;
+        for (int i = from; i < SAMPLE_COUNT; i++) {
+            // Points passed over only ever add cost, so nothing further on can win.
+            if (straying >= best) break;
+            float candidate = straying + keyDistance(to, i);
+            if (candidate < best) {
+                best = candidate;
+                bestPoint = i;
+            }
+            if (i > from) {
+                straying += PATH_WEIGHT * segmentDistance(pathX[i], pathY[i], ax, ay, bx, by);
+            }
+        }
+        alignmentCost = best;
+        return bestPoint;
+    }
+
+    // What the path costs after the last letter of a word aligned at `point`.
+    private float tailCost(int point, char key) {
+        float cost = 0;
+        for (int i = point + 1; i < SAMPLE_COUNT; i++) {
+            cost += PATH_WEIGHT * keyDistance(key, i);
+        }
+        return cost;
+    }
+
+    private static float frequencyCost(int frequency) {
+        return FREQUENCY_WEIGHT * (WordList.MAX_FREQUENCY - frequency) / WordList.MAX_FREQUENCY;
+    }
+
+    private float keyDistance(char key, int point) {
+        float dx = pathX[point] - keyX[key];
+        float dy = pathY[point] - keyY[key];
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static float segmentDistance(float px, float py, float ax, float ay, float bx, float by) {
+        float dx = bx - ax;
+        float dy = by - ay;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared > 0 ? ((px - ax) * dx + (py - ay) * dy) / lengthSquared : 0;
+        t = Math.max(0, Math.min(1, t));
+        float ex = px - (ax + t * dx);
+        float ey = py - (ay + t * dy);
+        return (float) Math.sqrt(ex * ex + ey * ey);
+    }
+
+    private void addResult(int node, float score) {
+        int i = resultCount;
+        while (i > 0 && score < resultScores[i - 1]) {
+            i--;
+        }
+        if (i >= MAX_RESULTS) return;
+        int end = Math.min(resultCount, MAX_RESULTS - 1);
+        System.arraycopy(resultNodes, i, resultNodes, i + 1, end - i);
+        System.arraycopy(resultScores, i, resultScores, i + 1, end - i);
+        resultNodes[i] = node;
+        resultScores[i] = score;
+        resultCount = end + 1;
+    }
+
+    private void offer(int node, int point, char key, float cost, float priority) {
+        int slot;
+        if (heapSize < BEAM_WIDTH) {
+            slot = heapSize;
+            heap[heapSize++] = slot;
+            siftUp(heapSize - 1, slot, priority);
+        } else {
+            slot = heap[0];
+            if (priority >= priorities[slot]) return;
+            siftDown(slot, priority);
+        }
+        nextNodes[slot] = node;
+        nextPoints[slot] = point;
+        nextKeys[slot] = key;
+        nextCosts[slot] = cost;
+        priorities[slot] = priority;
+    }
+
+    private void siftUp(int i, int slot, float priority) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[heap[parent]] >= priority) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+    }
+
+    // Replaces the root with `slot`, whose priority is about to become `priority`.
+    private void siftDown(int slot, float priority) {
+        int i = 0;
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && priorities[heap[child + 1]] > priorities[heap[child]]) {
+                child++;
+            }
+            if (priority >= priorities[heap[child]]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = slot;
+    }
+
+    // Slots 0 .. heapSize - 1 are all in use, so the next level becomes the beam as is.
+    private void swapBeams() {
+        int[] swapNodes = nodes;
+        nodes = nextNodes;
+        nextNodes = swapNodes;
+        int[] swapPoints = points;
+        points = nextPoints;
+        nextPoints = swapPoints;
+        char[] swapKeys = keys;
+        keys = nextKeys;
+        nextKeys = swapKeys;
+        float[] swapCosts = costs;
+        costs = nextCosts;
+        nextCosts = swapCosts;
+        beamSize = heapSize;
+    }
+}
@@ -0,0 +1,101 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * The touch points of one gesture, in the order they were reported, in the same
+ * coordinates as the key rectangles given to {@link GestureDecoder#fromKeys}.
+ *
+ * Points are kept in growable primitive buffers so a path can be reused from gesture to
+ * gesture without allocating. Not thread-safe; hand a {@link #copy} to other threads.
+ */
+public final class GesturePath {
+    private float[] xs;
+    private float[] ys;
+    private int size;
+
+    public GesturePath() {
+        this(64);
+    }
+
+    private GesturePath(int capacity) {
+        xs = new float[capacity];
+        ys = new float[capacity];
+    }
+
+    public void add(float x, float y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public float getX(int index) {
+        return xs[index];
+    }
+
+    public float getY(int index) {
+        return ys[index];
+    }
+
+    public float length() {
+        float length = 0;
+        for (int i = 1; i < size; i++) {
+            length += distance(i - 1, i);
+        }
+        return length;
+    }
+
+    public GesturePath copy() {
+        GesturePath copy = new GesturePath(Math.max(1, size));
+        System.arraycopy(xs, 0, copy.xs, 0, size);
+        System.arraycopy(ys, 0, copy.ys, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Writes {@code count} points spaced evenly along the path into {@code outX} and
+     * {@code outY}, so gestures drawn at different speeds compare alike. The path must not
+     * be empty.
+     */
+    public void resample(int count, float[] outX, float[] outY) {
+        float step = count > 1 ? length() / (count - 1) : 0;
+        int segment = 1;
+        // Distance walked from the start of the current segment.
+        float walked = 0;
+        for (int i = 0; i < count; i++) {
+            float target = step * i;
+            while (segment < size && walked + distance(segment - 1, segment) < target) {
+                walked += distance(segment - 1, segment);
+                segment++;
+            }
+            if (segment >= size) {
+                outX[i] = xs[size - 1];
+                outY[i] = ys[size - 1];
+                continue;
+            }
+            float length = distance(segment - 1, segment);
+            float t = length > 0 ? Math.min(1, (target - walked) / length) : 0;
+            outX[i] = xs[segment - 1] + t * (xs[segment] - xs[segment - 1]);
+            outY[i] = ys[segment - 1] + t * (ys[segment] - ys[segment - 1]);
+        }
+    }
+
+    private float distance(int from, int to) {
+        float dx = xs[to] - xs[from];
+        float dy = ys[to] - ys[from];
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+}
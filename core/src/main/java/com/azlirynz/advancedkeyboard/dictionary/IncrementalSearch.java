@@ -0,0 +1,208 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * Search state that follows the typed word one character at a time.
+ *
+ * For every typed prefix it keeps the trie node reached by an exact walk and the set of
+ * "active" nodes whose path is within {@code maxEdits} Damerau-Levenshtein edits of that
+ * prefix, together with their exact distance. Distances are weighted by
+ * {@link KeyProximity}: insertions, deletions and transpositions cost
+ * {@link KeyProximity#EDIT_COST}, substitutions cost less for neighbouring keys.
+ *
+ * Appending a character derives the next set from the previous one (and the one before
+ * it, for transpositions), and deleting a character just drops the top level, so the
+ * cost of a keystroke depends on the size of the active set rather than on the length
+ * of the word.
+ *
+ * States are packed as {@code node << 8 | distance} in one array shared by all levels.
+ * An instance is not thread-safe.
+ */
+public final class IncrementalSearch {
+    private final int maxDistance;
+
+    private PackedTrie trie;
+    private KeyProximity proximity;
+    private char[] typed = new char[16];
+    private int[] prefixNodes = new int[17];
+    private int[] levelStart = new int[18];
+    private int length;
+
+    private long[] states = new long[256];
+    private int stateCount;
+
+    private int[] resultNodes = new int[0];
+    private int[] resultDistances = new int[0];
+
+    public IncrementalSearch(int maxEdits) {
+        this.maxDistance = maxEdits * KeyProximity.EDIT_COST;
+    }
+
+    /**
+     * Moves the session to {@code word}, reusing the levels of the common prefix with the
+     * previous word. Returns false, leaving the session on a shorter prefix, if cancelled.
+     */
+    public boolean update(PackedTrie trie, KeyProximity proximity, CharSequence word,
+                          Cancellation cancellation) {
+        if (trie != this.trie || proximity != this.proximity) {
+            reset(trie, proximity);
+        }
+        int common = 0;
+        while (common < length && common < word.length() && typed[common] == word.charAt(common)) {
+            common++;
+        }
+        while (length > common) {
+            pop();
+        }
+        while (length < word.length()) {
+            if (cancellation.isCancelled()) return false;
+            push(word.charAt(length));
+        }
+        return true;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the node spelling the current word exactly, or {@link PackedTrie#NO_NODE}.
+     */
+    public int prefixNode() {
+        return prefixNodes[length];
+    }
+
+    /**
+     * Writes up to {@code k} words within the distance limit of the current word to
+     * {@code out}, closest first and then by frequency, and returns how many were written.
+     * Their weighted distances go to {@code outDistances}.
+     */
+    public int corrections(int k, int[] out, int[] outDistances) {
+        if (resultNodes.length < k) {
+            resultNodes = new int[k];
+            resultDistances = new int[k];
+        }
+        int count = 0;
+        for (int i = levelStart[length]; i < levelStart[length + 1]; i++) {
+            int node = (int) (states[i] >>> 8);
+            if (trie.isTerminal(node)) {
+                count = offer(node, (int) (states[i] & 0xff), count, k);
+            }
+        }
+        System.arraycopy(resultNodes, 0, out, 0, count);
+        System.arraycopy(resultDistances, 0, outDistances, 0, count);
+        return count;
+    }
+
+    private void reset(PackedTrie trie, KeyProximity proximity) {
+        this.trie = trie;
+        this.proximity = proximity;
+        length = 0;
+        stateCount = 0;
+        prefixNodes[0] = PackedTrie.ROOT;
+        levelStart[0] = 0;
+        add(PackedTrie.ROOT, 0);
+        closeOverInsertions(0);
+        levelStart[1] = stateCount;
+    }
+
+    private void push(char c) {
+        if (length + 2 >= levelStart.length) {
+            int capacity = levelStart.length * 2;
+            typed = Arrays.copyOf(typed, capacity);
+            prefixNodes = Arrays.copyOf(prefixNodes, capacity);
+            levelStart = Arrays.copyOf(levelStart, capacity);
+        }
+        int prefix = prefixNodes[length];
+        prefixNodes[length + 1] = prefix == PackedTrie.NO_NODE ? PackedTrie.NO_NODE : trie.child(prefix, c);
+
+        int start = stateCount;
+        for (int i = levelStart[length]; i < start; i++) {
+            int node = (int) (states[i] >>> 8);
+            int distance = (int) (states[i] & 0xff);
+            // The typed character is extra.
+            add(node, distance + KeyProximity.EDIT_COST);
+            // The typed character matches or replaces the next trie character.
+            for (int child = trie.firstChild(node); child < trie.childEnd(node); child++) {
+                add(child, distance + proximity.substitutionCost(c, trie.label(child)));
+            }
+        }
+        if (length > 0) {
+            // The last two typed characters are swapped relative to the trie path.
+            char previous = typed[length - 1];
+            for (int i = levelStart[length - 1]; i < levelStart[length]; i++) {
+                int swapped = trie.child((int) (states[i] >>> 8), c);
+                if (swapped != PackedTrie.NO_NODE) {
+                    add(trie.child(swapped, previous), (int) (states[i] & 0xff) + KeyProximity.EDIT_COST);
+                }
+            }
+        }
+        deduplicate(start);
+        closeOverInsertions(start);
+
+        typed[length] = c;
+        length++;
+        levelStart[length + 1] = stateCount;
+    }
+
+    private void pop() {
+        length--;
+        stateCount = levelStart[length + 1];
+    }
+
+    // Trie characters missing from the typed word: extend each state downwards. States
+    // appended here are extended in turn; duplicates are resolved once at the end.
+    private void closeOverInsertions(int start) {
+        for (int i = start; i < stateCount; i++) {
+            int distance = (int) (states[i] & 0xff) + KeyProximity.EDIT_COST;
+            if (distance > maxDistance) continue;
+            int node = (int) (states[i] >>> 8);
+            for (int child = trie.firstChild(node); child < trie.childEnd(node); child++) {
+                add(child, distance);
+            }
+        }
+        deduplicate(start);
+    }
+
+    private void add(int node, int distance) {
+        if (node == PackedTrie.NO_NODE || distance > maxDistance) return;
+        if (stateCount == states.length) {
+            states = Arrays.copyOf(states, stateCount * 2);
+        }
+        states[stateCount++] = ((long) node << 8) | distance;
+    }
+
+    // Sorting groups each node's states with the smallest distance first.
+    private void deduplicate(int start) {
+        Arrays.sort(states, start, stateCount);
+        int kept = start;
+        for (int i = start; i < stateCount; i++) {
+            if (kept == start || (states[i] >>> 8) != (states[kept - 1] >>> 8)) {
+                states[kept++] = states[i];
+            }
+        }
+        stateCount = kept;
+    }
+
+    // Keeps the best results in order with an insertion step; k is small.
+    private int offer(int node, int distance, int count, int limit) {
+        int frequency = trie.frequency(node);
+        int i = count;
+        while (i > 0 && isBetter(distance, frequency, resultDistances[i - 1], resultNodes[i - 1])) {
+            i--;
+        }
+        if (i >= limit) return count;
+        int end = Math.min(count, limit - 1);
+        System.arraycopy(resultNodes, i, resultNodes, i + 1, end - i);
+        System.arraycopy(resultDistances, i, resultDistances, i + 1, end - i);
+        resultNodes[i] = node;
+        resultDistances[i] = distance;
+        return end + 1;
+    }
+
+    private boolean isBetter(int distance, int frequency, int otherDistance, int otherNode) {
+        if (distance != otherDistance) return distance < otherDistance;
+        return frequency > trie.frequency(otherNode);
+    }
+}
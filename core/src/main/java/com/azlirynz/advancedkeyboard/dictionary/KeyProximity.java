@@ -0,0 +1,60 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * Substitution costs between typed characters, derived from key geometry.
+ *
+ * Costs are in units of {@link #EDIT_COST} per full edit: hitting a neighbouring key
+ * costs about half an edit, keys two or more keys apart cost a full edit. Only ASCII
+ * characters are looked up in the table; anything else is treated as an unrelated key.
+ */
+public final class KeyProximity {
+    public static final int EDIT_COST = 4;
+    public static final KeyProximity UNIFORM = new KeyProximity(uniformTable());
+
+    private static final int TABLE_SIZE = 128;
+
+    private final byte[] costs;
+
+    private KeyProximity(byte[] costs) {
+        this.costs = costs;
+    }
+
+    /**
+     * Builds the table from key rectangles; keys whose code is not an ASCII character are
+     * ignored.
+     */
+    public static KeyProximity fromKeys(int[] codes, int[] x, int[] y, int[] width, int[] height) {
+        byte[] costs = uniformTable();
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] <= 0 || codes[i] >= TABLE_SIZE) continue;
+            for (int j = 0; j < codes.length; j++) {
+                if (i == j || codes[j] <= 0 || codes[j] >= TABLE_SIZE) continue;
+                float dx = ((x[i] + width[i] / 2f) - (x[j] + width[j] / 2f)) / ((width[i] + width[j]) / 2f);
+                float dy = ((y[i] + height[i] / 2f) - (y[j] + height[j] / 2f)) / ((height[i] + height[j]) / 2f);
+                int cost = Math.round(2 * (float) Math.sqrt(dx * dx + dy * dy));
+                cost = Math.max(1, Math.min(EDIT_COST, cost));
+                int index = codes[i] * TABLE_SIZE + codes[j];
+                costs[index] = (byte) Math.min(costs[index], cost);
+            }
+        }
+        return new KeyProximity(costs);
+    }
+
+    public int substitutionCost(char typed, char expected) {
+        if ((typed | expected) >= TABLE_SIZE) {
+            return typed == expected ? 0 : EDIT_COST;
+        }
+        return costs[typed * TABLE_SIZE + expected];
+    }
+
+    private static byte[] uniformTable() {
+        byte[] costs = new byte[TABLE_SIZE * TABLE_SIZE];
+        Arrays.fill(costs, (byte) EDIT_COST);
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            costs[c * TABLE_SIZE + c] = 0;
+        }
+        return costs;
+    }
+}
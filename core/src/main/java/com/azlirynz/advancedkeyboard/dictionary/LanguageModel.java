@@ -0,0 +1,53 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import com.azlirynz.advancedkeyboard.metrics.MemoryFootprint;
+
+/**
+ * One locale's dictionary: its trie and, if there is one, the n-gram model built for it.
+ *
+ * Each locale's files live in a directory named after the locale: the JSON sources
+ * {@link #WORDS_SOURCE} and {@link #NGRAMS_SOURCE}, and the compiled {@link #WORDS_FILE}
+ * and {@link #NGRAMS_FILE} generated from them at build time.
+ */
+public final class LanguageModel {
+    public static final String WORDS_SOURCE = "words.json";
+    public static final String WORDS_FILE = "words.dict";
+    public static final String NGRAMS_SOURCE = "ngrams.json";
+    public static final String NGRAMS_FILE = "ngrams.dict";
+
+    private final String locale;
+    private final PackedTrie trie;
+    private final NgramModel ngramModel;
+
+    public LanguageModel(String locale, PackedTrie trie, NgramModel ngramModel) {
+        this.locale = locale;
+        this.trie = trie;
+        this.ngramModel = ngramModel;
+    }
+
+    public String getLocale() {
+        return locale;
+    }
+
+    public PackedTrie getTrie() {
+        return trie;
+    }
+
+    /**
+     * Returns the n-gram model for {@link #getTrie()}, or null.
+     */
+    public NgramModel getNgramModel() {
+        return ngramModel;
+    }
+
+    public long sizeInBytes() {
+        return trie.sizeInBytes() + (ngramModel != null ? ngramModel.sizeInBytes() : 0);
+    }
+
+    public void addTo(MemoryFootprint footprint, String name) {
+        footprint.add(name + " words", trie.sizeInBytes(), trie.isMapped());
+        if (ngramModel != null) {
+            footprint.add(name + " n-grams", ngramModel.sizeInBytes(), ngramModel.isMapped());
+        }
+    }
+}
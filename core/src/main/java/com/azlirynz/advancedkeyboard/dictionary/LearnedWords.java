@@ -0,0 +1,109 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Usage counts of words learned from the user, readable as immutable tries.
+ *
+ * Readers take a {@link Snapshot}: a base trie holding every word as of the last merge,
+ * and a small trie of the words used since, rebuilt copy-on-write on each insertion. Once
+ * enough recent words have piled up they are merged into a new base. Either way a new
+ * snapshot is swapped in whole, so readers never lock and never see a half-built trie.
+ *
+ * Writes must all happen on one thread; snapshots may be read from any thread.
+ */
+public final class LearnedWords {
+    private static final int MAX_RECENT = 32;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    private final Map<String, Integer> counts = new HashMap<>();
+    private final List<String> recent = new ArrayList<>();
+
+    /**
+     * One consistent view of the learned words. A word in both tries has the higher
+     * frequency in {@link #recent}, since counts only grow.
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(emptyTrie(), emptyTrie());
+
+        public final PackedTrie base;
+        public final PackedTrie recent;
+
+        Snapshot(PackedTrie base, PackedTrie recent) {
+            this.base = base;
+            this.recent = recent;
+        }
+
+        private static PackedTrie emptyTrie() {
+            return PackedTrie.build(new WordList());
+        }
+    }
+
+    /**
+     * Maps a usage count onto the dictionary's frequency scale; a word typed a handful of
+     * times competes with the most common dictionary words.
+     */
+    static int frequencyForCount(int count) {
+        return Math.min(WordList.MAX_FREQUENCY, 64 + 32 * count);
+    }
+
+    public Snapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Counts one more use of {@code word}, which must already be cleaned up, and
+     * publishes it right away.
+     */
+    public void learn(String word) {
+        increment(word, 1);
+        if (!recent.contains(word)) {
+            recent.add(word);
+        }
+        if (recent.size() >= MAX_RECENT) {
+            merge();
+            return;
+        }
+        WordList words = new WordList();
+        for (String recentWord : recent) {
+            words.add(recentWord, frequencyForCount(counts.get(recentWord)));
+        }
+        snapshot.set(new Snapshot(snapshot.get().base, PackedTrie.build(words)));
+    }
+
+    /**
+     * Adds to a count without publishing it, for bulk loading; call {@link #merge} after.
+     */
+    public void increment(String word, int delta) {
+        Integer count = counts.get(word);
+        counts.put(word, (count != null ? count : 0) + delta);
+    }
+
+    /**
+     * Rebuilds the base trie from all counts and publishes it with no recent words.
+     */
+    public void merge() {
+        WordList words = new WordList();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            words.add(entry.getKey(), frequencyForCount(entry.getValue()));
+        }
+        recent.clear();
+        snapshot.set(new Snapshot(PackedTrie.build(words), Snapshot.EMPTY.recent));
+    }
+
+    public int size() {
+        return counts.size();
+    }
+
+    /**
+     * Read-only view of the counts, for the writer thread only.
+     */
+    public Map<String, Integer> counts() {
+        return Collections.unmodifiableMap(counts);
+    }
+}
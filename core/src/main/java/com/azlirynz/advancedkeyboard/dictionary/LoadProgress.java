@@ -0,0 +1,96 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable snapshot of how far a dictionary load has got, with its timings.
+ *
+ * A load is {@link State#PARTIAL} from the moment the first, high-frequency subset of the
+ * words can be queried, and {@link State#READY} once everything has been published.
+ */
+public final class LoadProgress {
+    public enum State { NOT_STARTED, LOADING, PARTIAL, READY, FAILED }
+
+    public static final LoadProgress NOT_STARTED =
+            new LoadProgress(State.NOT_STARTED, 0, 0, 0, -1, 0);
+
+    private final State state;
+    private final int wordCount;
+    private final int stageCount;
+    private final long startNanos;
+    private final long usableNanos;
+    private final long updateNanos;
+
+    private LoadProgress(State state, int wordCount, int stageCount, long startNanos,
+                         long usableNanos, long updateNanos) {
+        this.state = state;
+        this.wordCount = wordCount;
+        this.stageCount = stageCount;
+        this.startNanos = startNanos;
+        this.usableNanos = usableNanos;
+        this.updateNanos = updateNanos;
+    }
+
+    public static LoadProgress started() {
+        long now = System.nanoTime();
+        return new LoadProgress(State.LOADING, 0, 0, now, -1, now);
+    }
+
+    /**
+     * Returns the progress after publishing a stage of {@code wordCount} words.
+     */
+    public LoadProgress published(int wordCount) {
+        long now = System.nanoTime();
+        return new LoadProgress(State.PARTIAL, wordCount, stageCount + 1, startNanos,
+                usableNanos >= 0 ? usableNanos : now, now);
+    }
+
+    public LoadProgress ready() {
+        return new LoadProgress(State.READY, wordCount, stageCount, startNanos, usableNanos,
+                System.nanoTime());
+    }
+
+    /**
+     * Returns the progress after an error; words published so far stay usable.
+     */
+    public LoadProgress failed() {
+        return new LoadProgress(State.FAILED, wordCount, stageCount, startNanos, usableNanos,
+                System.nanoTime());
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isUsable() {
+        return usableNanos >= 0;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public int getStageCount() {
+        return stageCount;
+    }
+
+    /**
+     * Milliseconds from the start of the load until words could first be queried, or -1.
+     */
+    public long getMillisUntilUsable() {
+        return usableNanos >= 0 ? TimeUnit.NANOSECONDS.toMillis(usableNanos - startNanos) : -1;
+    }
+
+    /**
+     * Milliseconds from the start of the load until this snapshot was taken.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(updateNanos - startNanos);
+    }
+
+    @Override
+    public String toString() {
+        return state + ": " + wordCount + " words in " + stageCount + " stages, usable after "
+                + getMillisUntilUsable() + " ms, " + getElapsedMillis() + " ms elapsed";
+    }
+}
@@ -0,0 +1,105 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loaded language models by locale, within a memory budget.
+ *
+ * When the models' total size exceeds the budget, the least recently used ones are
+ * dropped, except for pinned locales, which are the ones in use. Sizes count mapped
+ * files too: their pages are shared with the page cache, but still take up memory while
+ * resident. Thread-safe.
+ */
+public final class LocaleCache {
+    private final long budgetBytes;
+    // Access-ordered, least recently used first.
+    private final LinkedHashMap<String, LanguageModel> models =
+            new LinkedHashMap<>(8, 0.75f, true);
+    private final Set<String> pinned = new HashSet<>();
+    private long sizeInBytes;
+
+    public LocaleCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Returns the model for {@code locale}, marking it as recently used, or null.
+     */
+    public synchronized LanguageModel get(String locale) {
+        return models.get(locale);
+    }
+
+    public synchronized boolean contains(String locale) {
+        return models.containsKey(locale);
+    }
+
+    public synchronized void put(LanguageModel model) {
+        LanguageModel previous = models.put(model.getLocale(), model);
+        if (previous != null) {
+            sizeInBytes -= previous.sizeInBytes();
+        }
+        sizeInBytes += model.sizeInBytes();
+        trim();
+    }
+
+    /**
+     * Replaces the set of locales that must stay loaded; null entries are ignored.
+     */
+    public synchronized void pin(String... locales) {
+        pinned.clear();
+        pinned.addAll(Arrays.asList(locales));
+        trim();
+    }
+
+    public synchronized void remove(String locale) {
+        LanguageModel removed = models.remove(locale);
+        if (removed != null) {
+            sizeInBytes -= removed.sizeInBytes();
+        }
+    }
+
+    /**
+     * Drops every model that is not pinned, whatever the budget.
+     */
+    public synchronized void evictUnpinned() {
+        evict(0);
+    }
+
+    public synchronized void clear() {
+        models.clear();
+        sizeInBytes = 0;
+    }
+
+    /**
+     * Returns the loaded models, least recently used first.
+     */
+    public synchronized List<LanguageModel> models() {
+        return new ArrayList<>(models.values());
+    }
+
+    public synchronized long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    private void trim() {
+        evict(budgetBytes);
+    }
+
+    private void evict(long targetBytes) {
+        Iterator<Map.Entry<String, LanguageModel>> iterator = models.entrySet().iterator();
+        while (sizeInBytes > targetBytes && iterator.hasNext()) {
+            Map.Entry<String, LanguageModel> entry = iterator.next();
+            if (!pinned.contains(entry.getKey())) {
+                sizeInBytes -= entry.getValue().sizeInBytes();
+                iterator.remove();
+            }
+        }
+    }
+}
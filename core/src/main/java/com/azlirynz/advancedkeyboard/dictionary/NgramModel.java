@@ -0,0 +1,397 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bigram and trigram model over the words of a {@link PackedTrie}, which callers name by
+ * the trie node at which the word ends.
+ *
+ * Inside the model a word id is the word's index in the sorted vocabulary of nodes that
+ * occur in any n-gram, so the id range depends on how many words the n-grams use and not
+ * on the size of the trie. Each n-gram is packed into a {@code long} key (21 bits per
+ * word id), keys are stored sorted, and next to every key is
+ * its conditional probability as a quantized cost, {@code -ln(p) * COST_SCALE}, in a
+ * {@code short}. All n-grams sharing a history are therefore one contiguous range found
+ * by binary search. Like the trie, the model can be memory-mapped and queried in place.
+ */
+public final class NgramModel {
+    public static final int NO_WORD = -1;
+    public static final int COST_SCALE = 1024;
+
+    static final int MAGIC = 0x414b4e47; // "AKNG"
+    static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int WORD_BITS = 21;
+    private static final long WORD_MASK = (1L << WORD_BITS) - 1;
+    // Added to a bigram cost when no trigram matched: ln(2.5).
+    private static final int BACKOFF_COST = (int) (0.92 * COST_SCALE);
+
+    // Trie node of each word id, ascending.
+    private final IntBuffer vocabulary;
+    private final LongBuffer bigramKeys;
+    private final ShortBuffer bigramCosts;
+    private final LongBuffer trigramKeys;
+    private final ShortBuffer trigramCosts;
+    private final int trieNodeCount;
+    private final int trieWordCount;
+
+    private int[] scratchWords = new int[16];
+    private int[] scratchCosts = new int[16];
+
+    private NgramModel(IntBuffer vocabulary, LongBuffer bigramKeys, ShortBuffer bigramCosts,
+                       LongBuffer trigramKeys, ShortBuffer trigramCosts,
+                       int trieNodeCount, int trieWordCount) {
+        this.vocabulary = vocabulary;
+        this.bigramKeys = bigramKeys;
+        this.bigramCosts = bigramCosts;
+        this.trigramKeys = trigramKeys;
+        this.trigramCosts = trigramCosts;
+        this.trieNodeCount = trieNodeCount;
+        this.trieWordCount = trieWordCount;
+    }
+
+    /**
+     * Builds a model from a JSON list of {@code {"words": "of the", "count": 120}} entries.
+     * N-grams containing words that are not in {@code trie} are skipped.
+     *
+     * @throws IllegalArgumentException if the n-grams use more distinct words than a word
+     *         id can hold
+     */
+    public static NgramModel parse(PackedTrie trie, Reader reader) {
+        // The nodes of each known n-gram's words, followed by its count.
+        List<int[]> ngrams = new ArrayList<>();
+        JsonElement root = JsonParser.parseReader(reader);
+        JsonArray entries = root.isJsonArray() ? root.getAsJsonArray() : new JsonArray();
+        for (JsonElement entry : entries) {
+            JsonObject object = entry.getAsJsonObject();
+            String[] words = object.get("words").getAsString().trim()
+                    .toLowerCase(Locale.ROOT).split("\\s+");
+            int count = object.get("count").getAsInt();
+            if (count <= 0 || words.length < 2 || words.length > 3) continue;
+
+            int[] ngram = new int[words.length + 1];
+            boolean known = true;
+            for (int i = 0; i < words.length; i++) {
+                int node = trie.find(words[i]);
+                if (node == PackedTrie.NO_NODE || !trie.isTerminal(node)) {
+                    known = false;
+                    break;
+                }
+                ngram[i] = node;
+            }
+            if (!known) continue;
+            ngram[words.length] = count;
+            ngrams.add(ngram);
+        }
+
+        int[] vocabulary = vocabulary(ngrams);
+        // Keeps the key of the history after the last one within a positive long.
+        if (vocabulary.length > WORD_MASK) {
+            throw new IllegalArgumentException("N-grams use " + vocabulary.length
+                    + " distinct words, more than the " + WORD_MASK + " a word id can hold");
+        }
+        Map<Long, Integer> bigrams = new HashMap<>();
+        Map<Long, Integer> trigrams = new HashMap<>();
+        Map<Long, Integer> historyTotals = new HashMap<>();
+        for (int[] ngram : ngrams) {
+            int length = ngram.length - 1;
+            long key = 0;
+            for (int i = 0; i < length; i++) {
+                key = (key << WORD_BITS) | Arrays.binarySearch(vocabulary, ngram[i]);
+            }
+            add(length == 2 ? bigrams : trigrams, key, ngram[length]);
+            add(historyTotals, (length == 2 ? 0x1L << 62 : 0x2L << 62) | (key >>> WORD_BITS), ngram[length]);
+        }
+
+        long[] bigramKeys = sortedKeys(bigrams);
+        long[] trigramKeys = sortedKeys(trigrams);
+        short[] bigramCosts = costs(bigramKeys, bigrams, historyTotals, 0x1L << 62);
+        short[] trigramCosts = costs(trigramKeys, trigrams, historyTotals, 0x2L << 62);
+        return new NgramModel(IntBuffer.wrap(vocabulary),
+                LongBuffer.wrap(bigramKeys), ShortBuffer.wrap(bigramCosts),
+                LongBuffer.wrap(trigramKeys), ShortBuffer.wrap(trigramCosts),
+                trie.nodeCount(), trie.wordCount());
+    }
+
+    /**
+     * Reads a compiled model, checking that it was built against {@code trie}.
+     */
+    public static NgramModel read(ByteBuffer source, PackedTrie trie) throws IOException {
+        ByteBuffer buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a compiled n-gram model");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported n-gram model version " + version);
+        }
+        int nodeCount = buffer.getInt();
+        int wordCount = buffer.getInt();
+        if (nodeCount != trie.nodeCount() || wordCount != trie.wordCount()) {
+            throw new IOException("N-gram model was built for a different dictionary");
+        }
+        int vocabularySize = buffer.getInt();
+        int bigramCount = buffer.getInt();
+        int trigramCount = buffer.getInt();
+        buffer.getInt(); // Padding
+        if (vocabularySize < 0 || bigramCount < 0 || trigramCount < 0
+                || buffer.remaining() < sectionsSize(vocabularySize, bigramCount, trigramCount)) {
+            throw new IOException("Truncated n-gram model");
+        }
+        LongBuffer bigramKeys = section(buffer, bigramCount * 8).asLongBuffer();
+        LongBuffer trigramKeys = section(buffer, trigramCount * 8).asLongBuffer();
+        IntBuffer vocabulary = section(buffer, vocabularySize * 4).asIntBuffer();
+        ShortBuffer bigramCosts = section(buffer, bigramCount * 2).asShortBuffer();
+        ShortBuffer trigramCosts = section(buffer, trigramCount * 2).asShortBuffer();
+        return new NgramModel(vocabulary, bigramKeys, bigramCosts, trigramKeys, trigramCosts,
+                nodeCount, wordCount);
+    }
+
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        int vocabularySize = vocabulary.limit();
+        int bigramCount = bigramKeys.limit();
+        int trigramCount = trigramKeys.limit();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + sectionsSize(vocabularySize, bigramCount, trigramCount))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        // Padded to 8 bytes so the keys that follow stay aligned.
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(trieNodeCount).putInt(trieWordCount)
+                .putInt(vocabularySize).putInt(bigramCount).putInt(trigramCount).putInt(0);
+        for (int i = 0; i < bigramCount; i++) {
+            buffer.putLong(bigramKeys.get(i));
+        }
+        for (int i = 0; i < trigramCount; i++) {
+            buffer.putLong(trigramKeys.get(i));
+        }
+        for (int i = 0; i < vocabularySize; i++) {
+            buffer.putInt(vocabulary.get(i));
+        }
+        for (int i = 0; i < bigramCount; i++) {
+            buffer.putShort(bigramCosts.get(i));
+        }
+        for (int i = 0; i < trigramCount; i++) {
+            buffer.putShort(trigramCosts.get(i));
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public int bigramCount() {
+        return bigramKeys.limit();
+    }
+
+    public int trigramCount() {
+        return trigramKeys.limit();
+    }
+
+    public long sizeInBytes() {
+        return HEADER_SIZE + sectionsSize(vocabulary.limit(), bigramKeys.limit(), trigramKeys.limit());
+    }
+
+    /**
+     * Returns true if the model was read from a mapped file rather than built on the heap.
+     */
+    public boolean isMapped() {
+        return bigramKeys.isDirect();
+    }
+
+    /**
+     * Returns the cost of {@code word} following {@code previous2 previous1}, using the
+     * trigram if known and the backed-off bigram otherwise, or -1 if neither is known.
+     * Words are trie nodes, and either history word may be {@link #NO_WORD}.
+     */
+    public int cost(int previous2, int previous1, int word) {
+        previous2 = wordId(previous2);
+        previous1 = wordId(previous1);
+        word = wordId(word);
+        if (previous1 == NO_WORD || word == NO_WORD) return -1;
+        if (previous2 != NO_WORD) {
+            int index = indexOf(trigramKeys, ((((long) previous2 << WORD_BITS) | previous1) << WORD_BITS) | word);
+            if (index >= 0) return trigramCosts.get(index);
+        }
+        int index = indexOf(bigramKeys, ((long) previous1 << WORD_BITS) | word);
+        if (index < 0) return -1;
+        return bigramCosts.get(index) + (previous2 != NO_WORD ? BACKOFF_COST : 0);
+    }
+
+    /**
+     * Writes the trie nodes of up to {@code k} most likely next words to {@code outWords},
+     * cheapest first, with their costs in {@code outCosts}, and returns how many were
+     * written. Not thread-safe: candidates are merged in reusable scratch arrays.
+     */
+    public int predict(int previous2, int previous1, int k, int[] outWords, int[] outCosts) {
+        previous2 = wordId(previous2);
+        previous1 = wordId(previous1);
+        if (previous1 == NO_WORD) return 0;
+        int count = 0;
+        if (previous2 != NO_WORD) {
+            long history = ((long) previous2 << WORD_BITS) | previous1;
+            int start = lowerBound(trigramKeys, history << WORD_BITS);
+            int end = lowerBound(trigramKeys, (history + 1) << WORD_BITS);
+            for (int i = start; i < end; i++) {
+                count = collect(count, (int) (trigramKeys.get(i) & WORD_MASK), trigramCosts.get(i));
+            }
+        }
+        int start = lowerBound(bigramKeys, (long) previous1 << WORD_BITS);
+        int end = lowerBound(bigramKeys, (long) (previous1 + 1) << WORD_BITS);
+        int backoff = previous2 != NO_WORD ? BACKOFF_COST : 0;
+        for (int i = start; i < end; i++) {
+            count = collect(count, (int) (bigramKeys.get(i) & WORD_MASK), bigramCosts.get(i) + backoff);
+        }
+
+        int written = 0;
+        while (written < k && written < count) {
+            int best = written;
+            for (int i = written + 1; i < count; i++) {
+                if (scratchCosts[i] < scratchCosts[best]) best = i;
+            }
+            swap(written, best);
+            outWords[written] = vocabulary.get(scratchWords[written]);
+            outCosts[written] = scratchCosts[written];
+            written++;
+        }
+        return written;
+    }
+
+    // Adds a candidate unless the word is already there with a lower cost.
+    private int collect(int count, int word, int cost) {
+        for (int i = 0; i < count; i++) {
+            if (scratchWords[i] == word) {
+                scratchCosts[i] = Math.min(scratchCosts[i], cost);
+                return count;
+            }
+        }
+        if (count == scratchWords.length) {
+            scratchWords = Arrays.copyOf(scratchWords, count * 2);
+            scratchCosts = Arrays.copyOf(scratchCosts, count * 2);
+        }
+        scratchWords[count] = word;
+        scratchCosts[count] = cost;
+        return count + 1;
+    }
+
+    private void swap(int a, int b) {
+        int word = scratchWords[a];
+        int cost = scratchCosts[a];
+        scratchWords[a] = scratchWords[b];
+        scratchCosts[a] = scratchCosts[b];
+        scratchWords[b] = word;
+        scratchCosts[b] = cost;
+    }
+
+    // The id of the word ending at a trie node, or NO_WORD if no n-gram uses it.
+    private int wordId(int node) {
+        if (node == NO_WORD) return NO_WORD;
+        int lo = 0;
+        int hi = vocabulary.limit();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int midNode = vocabulary.get(mid);
+            if (midNode < node) {
+                lo = mid + 1;
+            } else if (midNode > node) {
+                hi = mid;
+            } else {
+                return mid;
+            }
+        }
+        return NO_WORD;
+    }
+
+    private static int indexOf(LongBuffer keys, long key) {
+        int index = lowerBound(keys, key);
+        return index < keys.limit() && keys.get(index) == key ? index : -1;
+    }
+
+    private static int lowerBound(LongBuffer keys, long key) {
+        int lo = 0;
+        int hi = keys.limit();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys.get(mid) < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static void add(Map<Long, Integer> counts, long key, int count) {
+        Integer current = counts.get(key);
+        counts.put(key, (current != null ? current : 0) + count);
+    }
+
+    private static int[] vocabulary(List<int[]> ngrams) {
+        int size = 0;
+        for (int[] ngram : ngrams) {
+            size += ngram.length - 1;
+        }
+        int[] nodes = new int[size];
+        int i = 0;
+        for (int[] ngram : ngrams) {
+            for (int j = 0; j < ngram.length - 1; j++) {
+                nodes[i++] = ngram[j];
+            }
+        }
+        Arrays.sort(nodes);
+        int distinct = 0;
+        for (int j = 0; j < size; j++) {
+            if (distinct == 0 || nodes[j] != nodes[distinct - 1]) {
+                nodes[distinct++] = nodes[j];
+            }
+        }
+        return Arrays.copyOf(nodes, distinct);
+    }
+
+    private static long[] sortedKeys(Map<Long, Integer> counts) {
+        long[] keys = new long[counts.size()];
+        int i = 0;
+        for (Long key : counts.keySet()) {
+            keys[i++] = key;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static short[] costs(long[] keys, Map<Long, Integer> counts,
+                                 Map<Long, Integer> historyTotals, long historyTag) {
+        short[] costs = new short[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            double total = historyTotals.get(historyTag | (keys[i] >>> WORD_BITS));
+            double cost = -Math.log(counts.get(keys[i]) / total) * COST_SCALE;
+            costs[i] = (short) Math.min(Short.MAX_VALUE, Math.round(cost));
+        }
+        return costs;
+    }
+
+    private static int sectionsSize(int vocabularySize, int bigramCount, int trigramCount) {
+        return vocabularySize * 4 + (bigramCount + trigramCount) * 10;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int size) {
+        ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.limit(size);
+        buffer.position(buffer.position() + size);
+        return slice;
+    }
+}
@@ -0,0 +1,332 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Read-only trie stored in flat primitive buffers.
+ *
+ * Nodes are numbered in breadth-first order, so the children of every node are a
+ * contiguous run of node indices sorted by label: the children of {@code n} are
+ * {@code [firstChild[n], firstChild[n + 1])}. Node 0 is the root.
+ *
+ * Every node stores the frequency of the word ending there (0 if none) and the
+ * highest frequency found anywhere in its subtree, which lets searches visit the
+ * most likely words first.
+ *
+ * The same layout is used on disk (see {@link #writeTo} and {@link #read}), so a
+ * compiled dictionary can be memory-mapped and queried in place.
+ */
+public final class PackedTrie {
+    public static final int ROOT = 0;
+    public static final int NO_NODE = -1;
+
+    static final int MAGIC = 0x414b4454; // "AKDT"
+    static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+
+    private final CharBuffer labels;
+    private final IntBuffer firstChild;
+    private final ByteBuffer frequency;
+    private final ByteBuffer maxFrequency;
+    private final int nodeCount;
+    private final int wordCount;
+
+    private PackedTrie(CharBuffer labels, IntBuffer firstChild, ByteBuffer frequency,
+                       ByteBuffer maxFrequency, int nodeCount, int wordCount) {
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.frequency = frequency;
+        this.maxFrequency = maxFrequency;
+        this.nodeCount = nodeCount;
+        this.wordCount = wordCount;
+    }
+
+    public static PackedTrie build(final WordList words) {
+        Integer[] order = new Integer[words.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return words.word(a).compareTo(words.word(b));
+            }
+        });
+
+        String[] sorted = new String[order.length];
+        int[] frequencies = new int[order.length];
+        int unique = 0;
+        for (Integer index : order) {
+            String word = words.word(index);
+            if (unique > 0 && word.equals(sorted[unique - 1])) {
+                frequencies[unique - 1] = Math.max(frequencies[unique - 1], words.frequency(index));
+            } else {
+                sorted[unique] = word;
+                frequencies[unique] = words.frequency(index);
+                unique++;
+            }
+        }
+        return new Builder(sorted, frequencies, unique).build();
+    }
+
+    public static PackedTrie read(ByteBuffer source) throws IOException {
+        ByteBuffer buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a compiled dictionary");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported dictionary version " + version);
+        }
+        int nodeCount = buffer.getInt();
+        int wordCount = buffer.getInt();
+        if (nodeCount <= 0 || buffer.remaining() < sectionsSize(nodeCount)) {
+            throw new IOException("Truncated dictionary");
+        }
+        CharBuffer labels = section(buffer, align(nodeCount * 2)).asCharBuffer();
+        IntBuffer firstChild = section(buffer, (nodeCount + 1) * 4).asIntBuffer();
+        ByteBuffer frequency = section(buffer, nodeCount);
+        ByteBuffer maxFrequency = section(buffer, nodeCount);
+        return new PackedTrie(labels, firstChild, frequency, maxFrequency, nodeCount, wordCount);
+    }
+
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + sectionsSize(nodeCount))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(wordCount);
+        for (int i = 0; i < nodeCount; i++) {
+            buffer.putChar(labels.get(i));
+        }
+        buffer.position(HEADER_SIZE + align(nodeCount * 2));
+        for (int i = 0; i <= nodeCount; i++) {
+            buffer.putInt(firstChild.get(i));
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            buffer.put(frequency.get(i));
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            buffer.put(maxFrequency.get(i));
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int wordCount() {
+        return wordCount;
+    }
+
+    public char label(int node) {
+        return labels.get(node);
+    }
+
+    public boolean isTerminal(int node) {
+        return frequency.get(node) != 0;
+    }
+
+    public int frequency(int node) {
+        return frequency.get(node) & 0xff;
+    }
+
+    public int maxFrequency(int node) {
+        return maxFrequency.get(node) & 0xff;
+    }
+
+    public int firstChild(int node) {
+        return firstChild.get(node);
+    }
+
+    public int childEnd(int node) {
+        return firstChild.get(node + 1);
+    }
+
+    public int parent(int node) {
+        // firstChild is non-decreasing, so the parent is the last node whose
+        // children start at or before this one.
+        int lo = 0;
+        int hi = node - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (firstChild.get(mid) <= node) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return node == ROOT ? NO_NODE : lo;
+    }
+
+    public int depth(int node) {
+        int depth = 0;
+        while (node != ROOT) {
+            node = parent(node);
+            depth++;
+        }
+        return depth;
+    }
+
+    public String wordAt(int node) {
+        char[] chars = new char[depth(node)];
+        for (int i = chars.length - 1; i >= 0; i--) {
+            chars[i] = labels.get(node);
+            node = parent(node);
+        }
+        return new String(chars);
+    }
+
+    public int child(int node, char c) {
+        int lo = firstChild.get(node);
+        int hi = firstChild.get(node + 1) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char label = labels.get(mid);
+            if (label < c) {
+                lo = mid + 1;
+            } else if (label > c) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return NO_NODE;
+    }
+
+    public int find(CharSequence prefix) {
+        int node = ROOT;
+        for (int i = 0; i < prefix.length() && node != NO_NODE; i++) {
+            node = child(node, prefix.charAt(i));
+        }
+        return node;
+    }
+
+    public boolean contains(CharSequence word) {
+        int node = find(word);
+        return node != NO_NODE && isTerminal(node);
+    }
+
+    public long sizeInBytes() {
+        return HEADER_SIZE + sectionsSize(nodeCount);
+    }
+
+    /**
+     * Returns true if the trie was read from a mapped file rather than built on the heap.
+     */
+    public boolean isMapped() {
+        return frequency.isDirect();
+    }
+
+    /**
+     * Returns a trie of the {@code count} most frequent words, built on the heap.
+     */
+    public PackedTrie mostFrequent(int count) {
+        int[] nodes = new int[Math.min(count, wordCount)];
+        int found = new CompletionSearch().topK(this, ROOT, nodes.length, nodes);
+        WordList words = new WordList();
+        for (int i = 0; i < found; i++) {
+            words.add(wordAt(nodes[i]), frequency(nodes[i]));
+        }
+        return build(words);
+    }
+
+    private static int sectionsSize(int nodeCount) {
+        return align(nodeCount * 2) + (nodeCount + 1) * 4 + nodeCount * 2;
+    }
+
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int size) {
+        ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.limit(size);
+        buffer.position(buffer.position() + size);
+        return slice;
+    }
+
+    private static final class Builder {
+        private final String[] words;
+        private final int[] wordFrequencies;
+        private final int wordCount;
+        private char[] labels = new char[64];
+        private int[] firstChild = new int[64];
+        private byte[] frequency = new byte[64];
+        private int[] lo = new int[64];
+        private int[] hi = new int[64];
+        private int[] depth = new int[64];
+        private int size;
+
+        Builder(String[] words, int[] wordFrequencies, int wordCount) {
+            this.words = words;
+            this.wordFrequencies = wordFrequencies;
+            this.wordCount = wordCount;
+        }
+
+        PackedTrie build() {
+            append('\0', 0, wordCount, 0);
+            for (int node = 0; node < size; node++) {
+                int start = lo[node];
+                int end = hi[node];
+                int d = depth[node];
+                firstChild[node] = size;
+                if (start < end && words[start].length() == d) {
+                    frequency[node] = (byte) wordFrequencies[start];
+                    start++;
+                }
+                while (start < end) {
+                    char c = words[start].charAt(d);
+                    int groupEnd = start + 1;
+                    while (groupEnd < end && words[groupEnd].charAt(d) == c) {
+                        groupEnd++;
+                    }
+                    append(c, start, groupEnd, d + 1);
+                    start = groupEnd;
+                }
+            }
+            int[] offsets = Arrays.copyOf(firstChild, size + 1);
+            offsets[size] = size;
+
+            // Children always come after their parent, so one backwards pass
+            // settles every subtree maximum.
+            byte[] maxFrequency = new byte[size];
+            for (int node = size - 1; node >= 0; node--) {
+                int max = frequency[node] & 0xff;
+                for (int child = offsets[node]; child < offsets[node + 1]; child++) {
+                    max = Math.max(max, maxFrequency[child] & 0xff);
+                }
+                maxFrequency[node] = (byte) max;
+            }
+            return new PackedTrie(CharBuffer.wrap(Arrays.copyOf(labels, size)),
+                    IntBuffer.wrap(offsets), ByteBuffer.wrap(Arrays.copyOf(frequency, size)),
+                    ByteBuffer.wrap(maxFrequency), size, wordCount);
+        }
+
+        private void append(char label, int start, int end, int d) {
+            if (size == labels.length) {
+                int capacity = size * 2;
+                labels = Arrays.copyOf(labels, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                frequency = Arrays.copyOf(frequency, capacity);
+                lo = Arrays.copyOf(lo, capacity);
+                hi = Arrays.copyOf(hi, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+            }
+            labels[size] = label;
+            lo[size] = start;
+            hi[size] = end;
+            depth[size] = d;
+            size++;
+        }
+    }
+}
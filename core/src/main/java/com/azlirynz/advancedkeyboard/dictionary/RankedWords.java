@@ -0,0 +1,71 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.List;
+
+/**
+ * The best few words from several sources, ordered by distance and then frequency.
+ * A word offered twice keeps its better ranking.
+ */
+final class RankedWords {
+    private final String[] words;
+    private final int[] distances;
+    private final int[] frequencies;
+    private int count;
+
+    RankedWords(int capacity) {
+        words = new String[capacity];
+        distances = new int[capacity];
+        frequencies = new int[capacity];
+    }
+
+    void clear() {
+        for (int i = 0; i < count; i++) {
+            words[i] = null;
+        }
+        count = 0;
+    }
+
+    void offer(String word, int distance, int frequency) {
+        for (int i = 0; i < count; i++) {
+            if (words[i].equals(word)) {
+                if (!isBetter(distance, frequency, i)) return;
+                remove(i);
+                break;
+            }
+        }
+        int i = count;
+        while (i > 0 && isBetter(distance, frequency, i - 1)) {
+            i--;
+        }
+        if (i >= words.length) return;
+        int end = Math.min(count, words.length - 1);
+        System.arraycopy(words, i, words, i + 1, end - i);
+        System.arraycopy(distances, i, distances, i + 1, end - i);
+        System.arraycopy(frequencies, i, frequencies, i + 1, end - i);
+        words[i] = word;
+        distances[i] = distance;
+        frequencies[i] = frequency;
+        count = end + 1;
+    }
+
+    void addTo(List<String> suggestions, int limit) {
+        for (int i = 0; i < count && suggestions.size() < limit; i++) {
+            if (!suggestions.contains(words[i])) {
+                suggestions.add(words[i]);
+            }
+        }
+    }
+
+    private boolean isBetter(int distance, int frequency, int index) {
+        if (distance != distances[index]) return distance < distances[index];
+        return frequency > frequencies[index];
+    }
+
+    private void remove(int index) {
+        count--;
+        System.arraycopy(words, index + 1, words, index, count - index);
+        System.arraycopy(distances, index + 1, distances, index, count - index);
+        System.arraycopy(frequencies, index + 1, frequencies, index, count - index);
+        words[count] = null;
+    }
+}
@@ -0,0 +1,47 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Builds a trie from a rank-ordered word list in stages, so lookups can start long
+ * before a large list has been read.
+ *
+ * The first stage holds only the {@link #CORE_WORDS} most frequent words; every later
+ * stage holds {@link #GROWTH_FACTOR} times as many, until the list is exhausted. Each
+ * stage is a fresh immutable {@link PackedTrie}, so publishing it through a volatile
+ * field is enough for readers to see either the previous stage or the new one in full.
+ * The list is only read once, and because the stages grow geometrically, building the
+ * earlier stages costs at most about 4/3 of building the complete trie.
+ */
+public final class StagedLoader {
+    public static final int CORE_WORDS = 1000;
+    private static final int GROWTH_FACTOR = 4;
+
+    public interface Listener {
+        /**
+         * Called on the loading thread with every stage, the last one {@code complete}.
+         */
+        void onStage(PackedTrie trie, boolean complete);
+    }
+
+    private StagedLoader() {
+    }
+
+    /**
+     * Returns the complete trie, or null if cancelled between stages.
+     */
+    public static PackedTrie load(Reader reader, Listener listener, Cancellation cancellation)
+            throws IOException {
+        WordListReader entries = new WordListReader(reader);
+        int target = CORE_WORDS;
+        while (true) {
+            boolean more = entries.readMore(target - entries.size());
+            PackedTrie trie = PackedTrie.build(entries.toWordList());
+            listener.onStage(trie, !more);
+            if (!more) return trie;
+            if (cancellation.isCancelled()) return null;
+            target = (int) Math.min(Integer.MAX_VALUE, (long) target * GROWTH_FACTOR);
+        }
+    }
+}
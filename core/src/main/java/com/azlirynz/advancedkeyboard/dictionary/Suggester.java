@@ -0,0 +1,243 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import com.azlirynz.advancedkeyboard.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ranks suggestions for the word being typed from up to two active language models, the
+ * user's learned words and the models' n-grams.
+ *
+ * Words from all dictionaries compete in one ranking; every dictionary uses the same
+ * frequency scale. The active models are held as one immutable snapshot, so replacing
+ * them from any thread never pairs an n-gram model with the wrong trie. Lookups keep
+ * incremental search state between calls and must only run on one thread at a time.
+ */
+public final class Suggester {
+    public static final int MAX_SUGGESTIONS = 5;
+    private static final int MAX_EDIT_DISTANCE = 2;
+    // Completions fetched per dictionary before reranking them by context.
+    private static final int MAX_CANDIDATES = 16;
+    private static final int MAX_MODELS = 2;
+
+    private final CompletionSearch completionSearch = new CompletionSearch();
+    // One search per dictionary: the active models, learned base and recently learned words.
+    private final IncrementalSearch[] sessions = {
+            new IncrementalSearch(MAX_EDIT_DISTANCE),
+            new IncrementalSearch(MAX_EDIT_DISTANCE),
+            new IncrementalSearch(MAX_EDIT_DISTANCE),
+            new IncrementalSearch(MAX_EDIT_DISTANCE)
+    };
+    private final RankedWords ranked = new RankedWords(MAX_SUGGESTIONS);
+    private final int[] completions = new int[MAX_CANDIDATES];
+    private final int[] distances = new int[MAX_CANDIDATES];
+    private final AtomicReference<LanguageModel[]> models = new AtomicReference<>(new LanguageModel[] {
+            new LanguageModel("", PackedTrie.build(new WordList()), null), null
+    });
+    private volatile KeyProximity keyProximity = KeyProximity.UNIFORM;
+    private volatile GestureDecoder gestureDecoder;
+    // Only used on the lookup thread.
+    private final PackedTrie[] tries = new PackedTrie[sessions.length];
+    private final PackedTrie[] contextTries = new PackedTrie[MAX_MODELS];
+    private final NgramModel[] contextModels = new NgramModel[MAX_MODELS];
+    private final int[] previous1 = new int[MAX_MODELS];
+    private final int[] previous2 = new int[MAX_MODELS];
+
+    /**
+     * Replaces the active models; {@code secondary} may be null. Both are ranked
+     * together, with the primary model's words winning ties.
+     */
+    public void setLanguageModels(LanguageModel primary, LanguageModel secondary) {
+        models.set(new LanguageModel[] {primary, secondary});
+    }
+
+    public LanguageModel getPrimaryModel() {
+        return models.get()[0];
+    }
+
+    public void setKeyProximity(KeyProximity keyProximity) {
+        this.keyProximity = keyProximity;
+    }
+
+    /**
+     * Sets the key layout gestures are decoded against. A decoder keeps search buffers, so
+     * it must not be shared with another suggester.
+     */
+    public void setGestureDecoder(GestureDecoder gestureDecoder) {
+        this.gestureDecoder = gestureDecoder;
+    }
+
+    /**
+     * Returns the words of the active models that {@code path} most likely traces, best
+     * first; none until a layout has been set. Returns null if the lookup was cancelled.
+     */
+    public List<String> getGestureSuggestions(GesturePath path, Cancellation cancellation) {
+        List<String> suggestions = new ArrayList<>();
+        GestureDecoder decoder = gestureDecoder;
+        if (decoder == null) return suggestions;
+        long start = Metrics.begin(Metrics.Stage.GESTURE_DECODE);
+        try {
+            LanguageModel[] active = models.get();
+            ranked.clear();
+            for (LanguageModel model : active) {
+                if (model != null && !decoder.decode(model.getTrie(), path, ranked, cancellation)) {
+                    ranked.clear();
+                    return null;
+                }
+            }
+            ranked.addTo(suggestions, MAX_SUGGESTIONS);
+            ranked.clear();
+            return suggestions;
+        } finally {
+            Metrics.end(Metrics.Stage.GESTURE_DECODE, start);
+        }
+    }
+
+    /**
+     * Looks up an already lower-cased word, such as {@link WordComposer#getLowerCaseWord()},
+     * after the space-separated {@code previousWords}, ranking {@code learned} words, if
+     * not null, alongside the active models. With nothing typed yet, returns only next-word
+     * predictions, which are none unless the models know the context.
+     * Returns null if the lookup was cancelled.
+     */
+    public List<String> getSuggestions(LearnedWords.Snapshot learned, CharSequence previousWords,
+                                       CharSequence typedWord, Cancellation cancellation) {
+        long start = Metrics.begin(Metrics.Stage.DICTIONARY_LOOKUP);
+        try {
+            return lookUp(learned, previousWords, typedWord, cancellation);
+        } finally {
+            Metrics.end(Metrics.Stage.DICTIONARY_LOOKUP, start);
+        }
+    }
+
+    private List<String> lookUp(LearnedWords.Snapshot learned, CharSequence previousWords,
+                                CharSequence typedWord, Cancellation cancellation) {
+        List<String> suggestions = new ArrayList<>();
+        LanguageModel[] active = models.get();
+        KeyProximity proximity = keyProximity;
+
+        resolveContext(active, previousWords);
+        if (typedWord.length() == 0) {
+            ranked.clear();
+            for (int i = 0; i < MAX_MODELS; i++) {
+                addPredictions(i);
+            }
+            ranked.addTo(suggestions, MAX_SUGGESTIONS);
+            ranked.clear();
+            // Without a known context there is nothing to predict; completing the empty
+            // word would only list the most frequent words.
+            return suggestions;
+        }
+
+        tries[0] = active[0].getTrie();
+        tries[1] = active[1] != null ? active[1].getTrie() : null;
+        tries[2] = learned != null ? learned.base : null;
+        tries[3] = learned != null ? learned.recent : null;
+
+        // Only the characters that changed since the last lookup are searched again
+        for (int i = 0; i < tries.length; i++) {
+            if (tries[i] != null && !sessions[i].update(tries[i], proximity, typedWord, cancellation)) {
+                return null;
+            }
+        }
+
+        // Exact match first
+        for (int i = 0; i < tries.length; i++) {
+            if (tries[i] != null && isWord(tries[i], sessions[i].prefixNode())) {
+                suggestions.add(typedWord.toString());
+                break;
+            }
+        }
+
+        // Then the most frequent completions of the prefix from all dictionaries
+        ranked.clear();
+        for (int i = 0; i < tries.length; i++) {
+            if (tries[i] != null) {
+                addCompletions(tries[i], sessions[i].prefixNode());
+            }
+        }
+        ranked.addTo(suggestions, MAX_SUGGESTIONS);
+
+        // Finally use edit distance if needed
+        if (suggestions.size() < 3) {
+            long fallback = Metrics.begin(Metrics.Stage.FUZZY_FALLBACK);
+            ranked.clear();
+            for (int i = 0; i < tries.length; i++) {
+                if (tries[i] != null) {
+                    addCorrections(tries[i], sessions[i]);
+                }
+            }
+            ranked.addTo(suggestions, MAX_SUGGESTIONS);
+            Metrics.end(Metrics.Stage.FUZZY_FALLBACK, fallback);
+        }
+        ranked.clear();
+
+        return suggestions;
+    }
+
+    private static boolean isWord(PackedTrie trie, int node) {
+        return node != PackedTrie.NO_NODE && trie.isTerminal(node);
+    }
+
+    private void addPredictions(int model) {
+        if (contextModels[model] == null) return;
+        int count = contextModels[model].predict(
+                previous2[model], previous1[model], MAX_SUGGESTIONS, completions, distances);
+        for (int i = 0; i < count; i++) {
+            ranked.offer(contextTries[model].wordAt(completions[i]), 0, bonusForCost(distances[i]));
+        }
+    }
+
+    private void addCompletions(PackedTrie trie, int node) {
+        int count = completionSearch.topK(trie, node, MAX_CANDIDATES, completions);
+        for (int i = 0; i < count; i++) {
+            int word = completions[i];
+            ranked.offer(trie.wordAt(word), 0, trie.frequency(word) + contextBonus(trie, word));
+        }
+    }
+
+    private void addCorrections(PackedTrie trie, IncrementalSearch search) {
+        int count = search.corrections(MAX_CANDIDATES, completions, distances);
+        for (int i = 0; i < count; i++) {
+            int word = completions[i];
+            ranked.offer(trie.wordAt(word), distances[i], trie.frequency(word) + contextBonus(trie, word));
+        }
+    }
+
+    private void resolveContext(LanguageModel[] active, CharSequence previousWords) {
+        String[] words = previousWords.length() > 0 ? previousWords.toString().trim().split(" ") : null;
+        for (int i = 0; i < MAX_MODELS; i++) {
+            contextTries[i] = active[i] != null ? active[i].getTrie() : null;
+            contextModels[i] = active[i] != null ? active[i].getNgramModel() : null;
+            previous1[i] = NgramModel.NO_WORD;
+            previous2[i] = NgramModel.NO_WORD;
+            if (contextModels[i] == null || words == null) continue;
+            previous1[i] = wordId(contextTries[i], words[words.length - 1]);
+            if (words.length >= 2) {
+                previous2[i] = wordId(contextTries[i], words[words.length - 2]);
+            }
+        }
+    }
+
+    private static int wordId(PackedTrie trie, String word) {
+        int node = trie.find(word);
+        return isWord(trie, node) ? node : NgramModel.NO_WORD;
+    }
+
+    private int contextBonus(PackedTrie trie, int node) {
+        for (int i = 0; i < MAX_MODELS; i++) {
+            if (trie == contextTries[i] && previous1[i] != NgramModel.NO_WORD) {
+                int cost = contextModels[i].cost(previous2[i], previous1[i], node);
+                return cost >= 0 ? bonusForCost(cost) : 0;
+            }
+        }
+        return 0;
+    }
+
+    // Up to one extra frequency range for words the context predicts with certainty.
+    private static int bonusForCost(int cost) {
+        return (int) (WordList.MAX_FREQUENCY * Math.exp(-cost / (double) NgramModel.COST_SCALE));
+    }
+}
@@ -0,0 +1,120 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * The word being typed, kept in growable primitive buffers.
+ *
+ * The composer is itself the {@link CharSequence} of typed characters, and
+ * {@link #getLowerCaseWord()} is a second view over a lower-cased copy that is updated
+ * as characters are added, so neither needs copying per keystroke. Once the buffers have
+ * grown to the longest word typed, {@link #add} and {@link #deleteLast} do not allocate.
+ */
+public class WordComposer implements CharSequence {
+    private char[] chars = new char[32];
+    private char[] lowerChars = new char[32];
+    // Codes of character i are codes[codeStart[i] .. codeStart[i + 1]).
+    private int[] codes = new int[128];
+    private int[] codeStart = new int[33];
+    private int size;
+
+    private final CharSequence lowerCaseWord = new LowerCaseView();
+
+    public void add(char c, int[] keyCodes) {
+        int codeCount = keyCodes != null ? keyCodes.length : 0;
+        if (size == chars.length) {
+            chars = Arrays.copyOf(chars, size * 2);
+            lowerChars = Arrays.copyOf(lowerChars, size * 2);
+            codeStart = Arrays.copyOf(codeStart, size * 2 + 1);
+        }
+        int start = codeStart[size];
+        if (start + codeCount > codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(codes.length * 2, start + codeCount));
+        }
+        chars[size] = c;
+        lowerChars[size] = Character.toLowerCase(c);
+        if (codeCount > 0) {
+            System.arraycopy(keyCodes, 0, codes, start, codeCount);
+        }
+        size++;
+        codeStart[size] = start + codeCount;
+    }
+
+    public void deleteLast() {
+        if (size > 0) {
+            size--;
+        }
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence getTypedWord() {
+        return this;
+    }
+
+    public CharSequence getLowerCaseWord() {
+        return lowerCaseWord;
+    }
+
+    public int getCodeCount(int index) {
+        return codeStart[index + 1] - codeStart[index];
+    }
+
+    public int getCode(int index, int codeIndex) {
+        return codes[codeStart[index] + codeIndex];
+    }
+
+    public int[] getCodesAt(int index) {
+        return Arrays.copyOfRange(codes, codeStart[index], codeStart[index + 1]);
+    }
+
+    @Override
+    public int length() {
+        return size;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, size);
+    }
+
+    private final class LowerCaseView implements CharSequence {
+        @Override
+        public int length() {
+            return size;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index >= size) throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+            return lowerChars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(lowerChars, 0, size);
+        }
+    }
+}
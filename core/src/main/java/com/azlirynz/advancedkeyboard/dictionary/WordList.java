@@ -0,0 +1,67 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Words with their unigram frequencies, as read from a JSON source.
+ *
+ * Entries are either plain strings, listed from most to least frequent, or objects of
+ * the form {@code {"word": "the", "frequency": 255}}. Frequencies are kept in
+ * {@code [1, MAX_FREQUENCY]}; plain strings get one derived from their rank.
+ */
+public final class WordList {
+    public static final int MAX_FREQUENCY = 255;
+
+    private String[] words = new String[16];
+    private int[] frequencies = new int[16];
+    private int size;
+
+    public static WordList parse(Reader reader) {
+        try {
+            WordListReader entries = new WordListReader(reader);
+            entries.readMore(Integer.MAX_VALUE);
+            return entries.toWordList();
+        } catch (MalformedJsonException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    static int frequencyForRank(int rank, int count) {
+        if (count <= 1) return MAX_FREQUENCY;
+        double scaled = Math.log(rank + 1) / Math.log(count);
+        return MAX_FREQUENCY - (int) Math.round(scaled * (MAX_FREQUENCY - 1));
+    }
+
+    public void add(String word, int frequency) {
+        String cleanWord = word.trim().toLowerCase(Locale.ROOT);
+        if (cleanWord.isEmpty()) return;
+        if (size == words.length) {
+            words = Arrays.copyOf(words, size * 2);
+            frequencies = Arrays.copyOf(frequencies, size * 2);
+        }
+        words[size] = cleanWord;
+        frequencies[size] = Math.max(1, Math.min(MAX_FREQUENCY, frequency));
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String word(int index) {
+        return words[index];
+    }
+
+    public int frequency(int index) {
+        return frequencies[index];
+    }
+}
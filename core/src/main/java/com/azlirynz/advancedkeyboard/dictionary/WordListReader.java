@@ -0,0 +1,104 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads a JSON word list (see {@link WordList}) a few entries at a time, so the head of a
+ * large list can be used before the rest has been read.
+ */
+public final class WordListReader implements Closeable {
+    private final JsonReader reader;
+    private String[] words = new String[16];
+    // 0 for entries ranked by position.
+    private int[] frequencies = new int[16];
+    private int size;
+    private boolean finished;
+
+    public WordListReader(Reader reader) throws IOException {
+        this.reader = new JsonReader(reader);
+        // Accepts the comments found in hand-edited lists.
+        this.reader.setLenient(true);
+        if (this.reader.peek() == JsonToken.BEGIN_ARRAY) {
+            this.reader.beginArray();
+        } else {
+            finished = true;
+        }
+    }
+
+    /**
+     * Reads up to {@code count} more entries and returns whether any may be left.
+     */
+    public boolean readMore(int count) throws IOException {
+        for (int i = 0; i < count && !finished; i++) {
+            if (!reader.hasNext()) {
+                finished = true;
+                break;
+            }
+            readEntry();
+        }
+        if (!finished && !reader.hasNext()) {
+            finished = true;
+        }
+        return !finished;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the entries read so far, with rank frequencies derived as if they were the
+     * whole list.
+     */
+    public WordList toWordList() {
+        WordList list = new WordList();
+        for (int i = 0; i < size; i++) {
+            int frequency = frequencies[i] != 0 ? frequencies[i] : WordList.frequencyForRank(i, size);
+            list.add(words[i], frequency);
+        }
+        return list;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readEntry() throws IOException {
+        String word = null;
+        int frequency = 0;
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("word")) {
+                    word = reader.nextString();
+                } else if (name.equals("frequency")) {
+                    // Explicit frequencies are clamped to at least 1 by WordList.
+                    frequency = Math.max(1, reader.nextInt());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } else {
+            word = reader.nextString();
+        }
+        if (word == null) {
+            throw new IOException("Word list entry without a word at " + reader.getPath());
+        }
+        if (size == words.length) {
+            words = Arrays.copyOf(words, size * 2);
+            frequencies = Arrays.copyOf(frequencies, size * 2);
+        }
+        words[size] = word;
+        frequencies[size] = frequency;
+        size++;
+    }
+}
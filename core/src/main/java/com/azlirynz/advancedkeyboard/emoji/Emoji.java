@@ -0,0 +1,41 @@
+package com.azlirynz.advancedkeyboard.emoji;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One emoji with the words it can be found by. Names, keywords and shortcodes are
+ * lower case; shortcodes are stored without their surrounding colons.
+ */
+public final class Emoji {
+    private final String glyph;
+    private final String name;
+    private final List<String> keywords;
+    private final List<String> shortcodes;
+
+    public Emoji(String glyph, String name, List<String> keywords, List<String> shortcodes) {
+        this.glyph = glyph;
+        this.name = name;
+        this.keywords = keywords != null ? keywords : Collections.<String>emptyList();
+        this.shortcodes = shortcodes != null ? shortcodes : Collections.<String>emptyList();
+    }
+
+    public String getGlyph() {
+        return glyph;
+    }
+
+    /**
+     * Returns the emoji's name, or null if the data has none.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    public List<String> getShortcodes() {
+        return shortcodes;
+    }
+}
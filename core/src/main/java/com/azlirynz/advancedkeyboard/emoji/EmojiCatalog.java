@@ -0,0 +1,221 @@
+package com.azlirynz.advancedkeyboard.emoji;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiled emoji data: category names and glyphs as one UTF-8 blob indexed by offset
+ * tables, followed by the {@link EmojiIndex} for search.
+ *
+ * Glyphs are only decoded into strings when a category or search result asks for them,
+ * so opening a mapped catalog costs a few header reads however many emojis it holds.
+ * The same layout is used on disk (see {@link #writeTo} and {@link #read}). Immutable and
+ * safe to share between threads.
+ */
+public final class EmojiCatalog {
+    static final int MAGIC = 0x414b4543; // "AKEC"
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+
+    // Category i holds emojis [categoryStart[i], categoryStart[i + 1]).
+    private final IntBuffer categoryStart;
+    // Category i's name is blob[nameOffset[i] .. nameOffset[i + 1]).
+    private final IntBuffer nameOffset;
+    // Emoji i's glyph is blob[glyphOffset[i] .. glyphOffset[i + 1]).
+    private final IntBuffer glyphOffset;
+    private final ByteBuffer blob;
+    private final EmojiIndex index;
+
+    private EmojiCatalog(IntBuffer categoryStart, IntBuffer nameOffset, IntBuffer glyphOffset,
+                         ByteBuffer blob, EmojiIndex index) {
+        this.categoryStart = categoryStart;
+        this.nameOffset = nameOffset;
+        this.glyphOffset = glyphOffset;
+        this.blob = blob;
+        this.index = index;
+    }
+
+    public static EmojiCatalog build(List<EmojiList.Category> categories) {
+        ByteArrayOutputStream blob = new ByteArrayOutputStream();
+        int[] categoryStart = new int[categories.size() + 1];
+        int[] nameOffset = new int[categories.size() + 1];
+        for (int i = 0; i < categories.size(); i++) {
+            String name = categories.get(i).getName();
+            append(blob, name != null ? name : "");
+            nameOffset[i + 1] = blob.size();
+            categoryStart[i + 1] = categoryStart[i] + categories.get(i).getEmojis().size();
+        }
+        List<Emoji> emojis = EmojiList.flatten(categories);
+        int[] glyphOffset = new int[emojis.size() + 1];
+        glyphOffset[0] = blob.size();
+        for (int i = 0; i < emojis.size(); i++) {
+            append(blob, emojis.get(i).getGlyph());
+            glyphOffset[i + 1] = blob.size();
+        }
+        return new EmojiCatalog(IntBuffer.wrap(categoryStart), IntBuffer.wrap(nameOffset),
+                IntBuffer.wrap(glyphOffset), ByteBuffer.wrap(blob.toByteArray()),
+                EmojiIndex.build(emojis));
+    }
+
+    private static void append(ByteArrayOutputStream blob, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        blob.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Opens a catalog written by {@link #writeTo}. The catalog keeps views of the buffer,
+     * which may be memory-mapped.
+     */
+    public static EmojiCatalog read(ByteBuffer source) throws IOException {
+        ByteBuffer buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a compiled emoji catalog");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported emoji catalog version " + version);
+        }
+        int categoryCount = buffer.getInt();
+        int emojiCount = buffer.getInt();
+        int blobSize = buffer.getInt();
+        if (categoryCount < 0 || emojiCount < 0 || blobSize < 0
+                || buffer.remaining() < sectionsSize(categoryCount, emojiCount, blobSize)) {
+            throw new IOException("Truncated emoji catalog");
+        }
+        IntBuffer categoryStart = section(buffer, (categoryCount + 1) * 4).asIntBuffer();
+        IntBuffer nameOffset = section(buffer, (categoryCount + 1) * 4).asIntBuffer();
+        IntBuffer glyphOffset = section(buffer, (emojiCount + 1) * 4).asIntBuffer();
+        ByteBuffer blob = section(buffer, align(blobSize));
+        blob.limit(blobSize);
+        EmojiIndex index = EmojiIndex.read(buffer);
+        if (index.size() != emojiCount) {
+            throw new IOException("Emoji index does not match the catalog");
+        }
+        return new EmojiCatalog(categoryStart, nameOffset, glyphOffset, blob, index);
+    }
+
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        int categoryCount = categoryCount();
+        int emojiCount = emojiCount();
+        int blobSize = blob.limit();
+        ByteBuffer buffer = ByteBuffer.allocate((int) sizeInBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(categoryCount).putInt(emojiCount).putInt(blobSize);
+        for (int i = 0; i <= categoryCount; i++) {
+            buffer.putInt(categoryStart.get(i));
+        }
+        for (int i = 0; i <= categoryCount; i++) {
+            buffer.putInt(nameOffset.get(i));
+        }
+        for (int i = 0; i <= emojiCount; i++) {
+            buffer.putInt(glyphOffset.get(i));
+        }
+        int start = buffer.position();
+        for (int i = 0; i < blobSize; i++) {
+            buffer.put(blob.get(i));
+        }
+        buffer.position(start + align(blobSize));
+        index.write(buffer);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public int categoryCount() {
+        return categoryStart.limit() - 1;
+    }
+
+    public int emojiCount() {
+        return glyphOffset.limit() - 1;
+    }
+
+    public String categoryName(int category) {
+        return decode(nameOffset.get(category), nameOffset.get(category + 1));
+    }
+
+    /**
+     * Decodes the glyphs of one category into a new immutable list.
+     */
+    public List<String> categoryGlyphs(int category) {
+        int first = categoryStart.get(category);
+        int end = categoryStart.get(category + 1);
+        int base = glyphOffset.get(first);
+        // One bulk copy out of the blob, then one string per glyph.
+        byte[] bytes = new byte[glyphOffset.get(end) - base];
+        ByteBuffer view = blob.duplicate();
+        view.position(base);
+        view.get(bytes);
+        List<String> glyphs = new ArrayList<>(end - first);
+        for (int i = first; i < end; i++) {
+            int offset = glyphOffset.get(i) - base;
+            int length = glyphOffset.get(i + 1) - glyphOffset.get(i);
+            glyphs.add(new String(bytes, offset, length, StandardCharsets.UTF_8));
+        }
+        return Collections.unmodifiableList(glyphs);
+    }
+
+    public String glyph(int emoji) {
+        return decode(glyphOffset.get(emoji), glyphOffset.get(emoji + 1));
+    }
+
+    public EmojiIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the glyphs of up to {@code limit} matches of {@code query}; see
+     * {@link EmojiIndex#search(CharSequence, int, int[])}.
+     */
+    public List<String> search(CharSequence query, int limit) {
+        int[] found = new int[limit];
+        int count = index.search(query, limit, found);
+        List<String> glyphs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            glyphs.add(glyph(found[i]));
+        }
+        return glyphs;
+    }
+
+    public long sizeInBytes() {
+        return HEADER_SIZE + sectionsSize(categoryCount(), emojiCount(), blob.limit()) + index.sizeInBytes();
+    }
+
+    /**
+     * Returns true if the catalog was read from a mapped file rather than built on the heap.
+     */
+    public boolean isMapped() {
+        return blob.isDirect();
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = blob.duplicate();
+        view.position(start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Not counting the index, which checks its own size.
+    private static int sectionsSize(int categoryCount, int emojiCount, int blobSize) {
+        return (categoryCount + 1) * 8 + (emojiCount + 1) * 4 + align(blobSize);
+    }
+
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int size) {
+        ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.limit(size);
+        buffer.position(buffer.position() + size);
+        return slice;
+    }
+}
@@ -0,0 +1,48 @@
+package com.azlirynz.advancedkeyboard.emoji;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Build-time conversion of the JSON emoji data (see {@link EmojiList}) into a binary
+ * {@link EmojiCatalog}.
+ */
+public final class EmojiCompiler {
+    public static final String SOURCE = "emoji.json";
+    public static final String CATALOG = "emoji.cat";
+
+    private EmojiCompiler() {
+    }
+
+    public static EmojiCatalog compile(File source, File output) throws IOException {
+        EmojiCatalog catalog;
+        try (Reader reader = new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8)) {
+            catalog = EmojiCatalog.build(EmojiList.parse(reader));
+        }
+        File parent = output.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        try (FileOutputStream out = new FileOutputStream(output);
+             FileChannel channel = out.getChannel()) {
+            catalog.writeTo(channel);
+        }
+        return catalog;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: EmojiCompiler <emoji.json> <emoji.cat>");
+            System.exit(2);
+        }
+        EmojiCatalog catalog = compile(new File(args[0]), new File(args[1]));
+        System.out.println("Compiled " + catalog.emojiCount() + " emojis in " + catalog.categoryCount()
+                + " categories into " + catalog.sizeInBytes() + " bytes");
+    }
+}
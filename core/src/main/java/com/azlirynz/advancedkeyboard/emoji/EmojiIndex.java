@@ -0,0 +1,287 @@
+package com.azlirynz.advancedkeyboard.emoji;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Prefix index over the words of emoji names, their keywords and their shortcodes.
+ *
+ * Each distinct term is stored once, packed in sorted order into one char buffer, with
+ * the sorted indexes of the emojis it belongs to. A lookup is a binary search for the
+ * first term with the query as prefix followed by a scan over the matching run.
+ * Shortcodes are indexed with a leading colon and are only found by queries that start
+ * with one, as typed: {@code ":smi"}. The same layout is stored in an
+ * {@link EmojiCatalog}, so a compiled index is queried in place. Immutable and safe to
+ * share between threads.
+ */
+public final class EmojiIndex {
+    private static final char SHORTCODE_MARK = ':';
+    private static final int HEADER_SIZE = 16;
+
+    private final int emojiCount;
+    private final CharBuffer chars;
+    // Term i is chars[termStart[i] .. termStart[i + 1]).
+    private final IntBuffer termStart;
+    // Term i belongs to emojis postings[postingStart[i] .. postingStart[i + 1]), ascending.
+    private final IntBuffer postingStart;
+    private final IntBuffer postings;
+
+    private EmojiIndex(int emojiCount, CharBuffer chars, IntBuffer termStart,
+                       IntBuffer postingStart, IntBuffer postings) {
+        this.emojiCount = emojiCount;
+        this.chars = chars;
+        this.termStart = termStart;
+        this.postingStart = postingStart;
+        this.postings = postings;
+    }
+
+    /**
+     * Indexes {@code emojis}; their order is the order of equally good matches.
+     */
+    public static EmojiIndex build(List<Emoji> emojis) {
+        // Emojis are visited in order, so every list of owners comes out ascending.
+        TreeMap<String, List<Integer>> owners = new TreeMap<>();
+        Set<String> emojiTerms = new HashSet<>();
+        int postingCount = 0;
+        for (int i = 0; i < emojis.size(); i++) {
+            Emoji emoji = emojis.get(i);
+            emojiTerms.clear();
+            if (emoji.getName() != null) {
+                addWords(emoji.getName(), emojiTerms);
+            }
+            for (String keyword : emoji.getKeywords()) {
+                addWords(keyword, emojiTerms);
+            }
+            for (String shortcode : emoji.getShortcodes()) {
+                emojiTerms.add(SHORTCODE_MARK + shortcode);
+            }
+            for (String term : emojiTerms) {
+                List<Integer> termOwners = owners.get(term);
+                if (termOwners == null) {
+                    termOwners = new ArrayList<>(1);
+                    owners.put(term, termOwners);
+                }
+                termOwners.add(i);
+            }
+            postingCount += emojiTerms.size();
+        }
+
+        int totalLength = 0;
+        for (String term : owners.keySet()) {
+            totalLength += term.length();
+        }
+        char[] chars = new char[totalLength];
+        int[] termStart = new int[owners.size() + 1];
+        int[] postingStart = new int[owners.size() + 1];
+        int[] postings = new int[postingCount];
+        int term = 0;
+        for (Map.Entry<String, List<Integer>> entry : owners.entrySet()) {
+            String text = entry.getKey();
+            text.getChars(0, text.length(), chars, termStart[term]);
+            termStart[term + 1] = termStart[term] + text.length();
+            int posting = postingStart[term];
+            for (Integer owner : entry.getValue()) {
+                postings[posting++] = owner;
+            }
+            postingStart[term + 1] = posting;
+            term++;
+        }
+        return new EmojiIndex(emojis.size(), CharBuffer.wrap(chars), IntBuffer.wrap(termStart),
+                IntBuffer.wrap(postingStart), IntBuffer.wrap(postings));
+    }
+
+    // Splits on anything that is not a letter or digit, so "face: medium skin tone" and
+    // "t-shirt" are found by each of their words.
+    private static void addWords(String text, Set<String> out) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                out.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write} at the buffer's position, which is left
+     * after it. The index keeps views of the buffer.
+     */
+    static EmojiIndex read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE) {
+            throw new IOException("Truncated emoji index");
+        }
+        int emojiCount = buffer.getInt();
+        int termCount = buffer.getInt();
+        int charCount = buffer.getInt();
+        int postingCount = buffer.getInt();
+        if (termCount < 0 || charCount < 0 || postingCount < 0
+                || buffer.remaining() < sectionsSize(termCount, charCount, postingCount)) {
+            throw new IOException("Truncated emoji index");
+        }
+        CharBuffer chars = section(buffer, align(charCount * 2)).asCharBuffer();
+        IntBuffer termStart = section(buffer, (termCount + 1) * 4).asIntBuffer();
+        IntBuffer postingStart = section(buffer, (termCount + 1) * 4).asIntBuffer();
+        IntBuffer postings = section(buffer, postingCount * 4).asIntBuffer();
+        return new EmojiIndex(emojiCount, chars, termStart, postingStart, postings);
+    }
+
+    /**
+     * Writes the index at the position of a little-endian buffer with at least
+     * {@link #sizeInBytes} remaining.
+     */
+    void write(ByteBuffer buffer) {
+        int charCount = chars.limit();
+        buffer.putInt(emojiCount).putInt(termCount()).putInt(charCount).putInt(postings.limit());
+        int start = buffer.position();
+        for (int i = 0; i < charCount; i++) {
+            buffer.putChar(chars.get(i));
+        }
+        buffer.position(start + align(charCount * 2));
+        for (int i = 0; i <= termCount(); i++) {
+            buffer.putInt(termStart.get(i));
+        }
+        for (int i = 0; i <= termCount(); i++) {
+            buffer.putInt(postingStart.get(i));
+        }
+        for (int i = 0; i < postings.limit(); i++) {
+            buffer.putInt(postings.get(i));
+        }
+    }
+
+    public int size() {
+        return emojiCount;
+    }
+
+    public int termCount() {
+        return termStart.limit() - 1;
+    }
+
+    /**
+     * Finds up to {@code limit} emojis with a term starting with the lower-case
+     * {@code query}, writing their indexes into {@code out} and returning how many were
+     * found. Emojis with a term equal to the query come first, then the rest in index
+     * order. A trailing colon on a shortcode query asks for exact matches only.
+     */
+    public int search(CharSequence query, int limit, int[] out) {
+        int length = query.length();
+        boolean exactOnly = length > 1 && query.charAt(0) == SHORTCODE_MARK
+                && query.charAt(length - 1) == SHORTCODE_MARK;
+        if (exactOnly) {
+            length--;
+        }
+        if (length == 0 || limit <= 0) return 0;
+
+        int count = 0;
+        for (int term = lowerBound(query, length); term < termCount(); term++) {
+            if (commonPrefix(term, query, length) < length) break;
+            boolean exact = termLength(term) == length;
+            if (exactOnly && !exact) break;
+            // Ranks exact matches ahead of all prefix matches, each group by emoji index.
+            int offset = exact ? 0 : emojiCount;
+            int end = postingStart.get(term + 1);
+            for (int i = postingStart.get(term); i < end; i++) {
+                int rank = offset + postings.get(i);
+                // Postings ascend, so the rest of this term's cannot make it either.
+                if (count == limit && rank >= out[count - 1]) break;
+                count = insert(out, count, limit, rank);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (out[i] >= emojiCount) {
+                out[i] -= emojiCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the size of the index in bytes, as written by {@link #write}.
+     */
+    public long sizeInBytes() {
+        return HEADER_SIZE + sectionsSize(termCount(), chars.limit(), postings.limit());
+    }
+
+    private static int sectionsSize(int termCount, int charCount, int postingCount) {
+        return align(charCount * 2) + (termCount + 1) * 8 + postingCount * 4;
+    }
+
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int size) {
+        ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.limit(size);
+        buffer.position(buffer.position() + size);
+        return slice;
+    }
+
+    // Keeps out[0 .. count) sorted by rank, holding each emoji once with its best rank.
+    private int insert(int[] out, int count, int limit, int rank) {
+        int emoji = rank % emojiCount;
+        for (int i = 0; i < count; i++) {
+            if (out[i] % emojiCount == emoji) {
+                if (out[i] <= rank) return count;
+                System.arraycopy(out, i + 1, out, i, count - i - 1);
+                count--;
+                break;
+            }
+        }
+        int position = count < limit ? count : count - 1;
+        while (position > 0 && out[position - 1] > rank) {
+            out[position] = out[position - 1];
+            position--;
+        }
+        out[position] = rank;
+        return count < limit ? count + 1 : count;
+    }
+
+    private int termLength(int term) {
+        return termStart.get(term + 1) - termStart.get(term);
+    }
+
+    // First term not less than the first length chars of query.
+    private int lowerBound(CharSequence query, int length) {
+        int low = 0;
+        int high = termCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, query, length) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int term, CharSequence query, int length) {
+        int common = commonPrefix(term, query, length);
+        if (common < Math.min(termLength(term), length)) {
+            return chars.get(termStart.get(term) + common) - query.charAt(common);
+        }
+        return termLength(term) - length;
+    }
+
+    private int commonPrefix(int term, CharSequence query, int length) {
+        int limit = Math.min(termLength(term), length);
+        int start = termStart.get(term);
+        int i = 0;
+        while (i < limit && chars.get(start + i) == query.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
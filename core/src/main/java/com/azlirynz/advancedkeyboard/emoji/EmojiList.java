@@ -0,0 +1,127 @@
+package com.azlirynz.advancedkeyboard.emoji;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the emoji data: a JSON array of categories, each with a {@code name} and an
+ * {@code emojis} array. An emoji is either a bare glyph string or an object with an
+ * {@code emoji} glyph and optional {@code name}, {@code keywords} and {@code shortcodes}.
+ */
+public final class EmojiList {
+    private EmojiList() {
+    }
+
+    public static final class Category {
+        private final String name;
+        private final List<Emoji> emojis;
+
+        Category(String name, List<Emoji> emojis) {
+            this.name = name;
+            this.emojis = Collections.unmodifiableList(emojis);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Emoji> getEmojis() {
+            return emojis;
+        }
+    }
+
+    public static List<Category> parse(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        List<Category> categories = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            categories.add(readCategory(json));
+        }
+        json.endArray();
+        return Collections.unmodifiableList(categories);
+    }
+
+    /**
+     * Returns the emojis of all categories, in order.
+     */
+    public static List<Emoji> flatten(List<Category> categories) {
+        List<Emoji> emojis = new ArrayList<>();
+        for (Category category : categories) {
+            emojis.addAll(category.getEmojis());
+        }
+        return emojis;
+    }
+
+    private static Category readCategory(JsonReader json) throws IOException {
+        String name = null;
+        List<Emoji> emojis = new ArrayList<>();
+        json.beginObject();
+        while (json.hasNext()) {
+            String field = json.nextName();
+            if (field.equals("name")) {
+                name = json.nextString();
+            } else if (field.equals("emojis")) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    emojis.add(readEmoji(json));
+                }
+                json.endArray();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return new Category(name, emojis);
+    }
+
+    private static Emoji readEmoji(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.STRING) {
+            return new Emoji(json.nextString(), null, null, null);
+        }
+        String glyph = null;
+        String name = null;
+        List<String> keywords = null;
+        List<String> shortcodes = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            String field = json.nextName();
+            if (field.equals("emoji")) {
+                glyph = json.nextString();
+            } else if (field.equals("name")) {
+                name = json.nextString().toLowerCase(Locale.ROOT);
+            } else if (field.equals("keywords")) {
+                keywords = readStrings(json);
+            } else if (field.equals("shortcodes")) {
+                shortcodes = readStrings(json);
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        if (glyph == null) {
+            throw new IOException("Emoji without a glyph at " + json.getPath());
+        }
+        return new Emoji(glyph, name, keywords, shortcodes);
+    }
+
+    private static List<String> readStrings(JsonReader json) throws IOException {
+        List<String> strings = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            String string = json.nextString().toLowerCase(Locale.ROOT);
+            // Accepts shortcodes written with their colons.
+            int start = string.startsWith(":") ? 1 : 0;
+            int end = string.length() > start && string.endsWith(":") ? string.length() - 1 : string.length();
+            strings.add(string.substring(start, end));
+        }
+        json.endArray();
+        return Collections.unmodifiableList(strings);
+    }
+}
@@ -0,0 +1,130 @@
+package com.azlirynz.advancedkeyboard.emoji;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The emojis used most, by frequency with decay, in a fixed number of slots.
+ *
+ * Every use adds one to an emoji's score and all scores decay by {@link #DECAY} per use
+ * of any emoji, so an emoji used often long ago gives way to one used a few times lately.
+ * Decay is applied lazily from the use counter at which each score was last updated.
+ * When all slots are taken a new emoji replaces the one with the lowest current score.
+ *
+ * Not thread-safe; {@link #ranked} returns an immutable list that may be shared.
+ */
+public final class EmojiUsage {
+    public static final int CAPACITY = 32;
+    static final double DECAY = 0.95;
+    private static final int MAGIC = 0x414b4555; // "AKEU"
+    private static final int VERSION = 1;
+
+    private final String[] glyphs = new String[CAPACITY];
+    private final double[] scores = new double[CAPACITY];
+    private final long[] updatedAt = new long[CAPACITY];
+    private int size;
+    private long uses;
+
+    public void record(String glyph) {
+        uses++;
+        int slot = indexOf(glyph);
+        if (slot < 0) {
+            slot = size < CAPACITY ? size++ : weakest();
+            glyphs[slot] = glyph;
+            scores[slot] = 0;
+            updatedAt[slot] = uses;
+        }
+        scores[slot] = scoreAt(slot) + 1;
+        updatedAt[slot] = uses;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the emojis from highest to lowest current score; ties go to the most
+     * recently used.
+     */
+    public List<String> ranked() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byScore = Double.compare(scoreAt(b), scoreAt(a));
+                return byScore != 0 ? byScore : Long.compare(updatedAt[b], updatedAt[a]);
+            }
+        });
+        List<String> ranked = new ArrayList<>(size);
+        for (Integer slot : order) {
+            ranked.add(glyphs[slot]);
+        }
+        return Collections.unmodifiableList(ranked);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(uses);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeUTF(glyphs[i]);
+            out.writeDouble(scores[i]);
+            out.writeLong(updatedAt[i]);
+        }
+    }
+
+    /**
+     * Replaces the contents with what {@link #writeTo} wrote.
+     */
+    public void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unrecognized emoji usage data");
+        }
+        long readUses = in.readLong();
+        int readSize = in.readInt();
+        if (readSize < 0 || readSize > CAPACITY) {
+            throw new IOException("Bad emoji usage size " + readSize);
+        }
+        for (int i = 0; i < readSize; i++) {
+            glyphs[i] = in.readUTF();
+            scores[i] = in.readDouble();
+            updatedAt[i] = in.readLong();
+        }
+        uses = readUses;
+        size = readSize;
+    }
+
+    private double scoreAt(int slot) {
+        return scores[slot] * Math.pow(DECAY, uses - updatedAt[slot]);
+    }
+
+    private int indexOf(String glyph) {
+        for (int i = 0; i < size; i++) {
+            if (glyphs[i].equals(glyph)) return i;
+        }
+        return -1;
+    }
+
+    private int weakest() {
+        int weakest = 0;
+        double lowest = scoreAt(0);
+        for (int i = 1; i < size; i++) {
+            double score = scoreAt(i);
+            if (score < lowest || score == lowest && updatedAt[i] < updatedAt[weakest]) {
+                weakest = i;
+                lowest = score;
+            }
+        }
+        return weakest;
+    }
+}
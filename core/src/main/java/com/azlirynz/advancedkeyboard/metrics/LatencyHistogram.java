@@ -0,0 +1,92 @@
+package com.azlirynz.advancedkeyboard.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in nanoseconds into log-linear buckets, in the manner of an HDR
+ * histogram: every power of two is split into {@value #SUB_BUCKETS} equal buckets, so any
+ * recorded value is reported within about 3% of itself from a nanosecond up to a minute.
+ *
+ * All buckets are allocated up front and recording is one atomic increment, so it never
+ * allocates or blocks and may happen on any thread; the total is summed when read.
+ * Percentiles read while values are being recorded may be off by those values.
+ */
+public final class LatencyHistogram {
+    static final int SUB_BUCKETS = 32;
+    private static final int SUB_BUCKET_BITS = 5;
+    // Values from 2^MAX_MAGNITUDE ns, about 68 s, go in the last bucket.
+    private static final int MAX_MAGNITUDE = 36;
+    private static final int BUCKET_COUNT = SUB_BUCKETS * (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucketOf(nanos));
+        long max = maxValue.get();
+        while (nanos > max && !maxValue.compareAndSet(max, nanos)) {
+            max = maxValue.get();
+        }
+    }
+
+    public long count() {
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            total += counts.get(bucket);
+        }
+        return total;
+    }
+
+    public long max() {
+        return maxValue.get();
+    }
+
+    /**
+     * Returns the value that {@code percentile} percent of the recorded values do not
+     * exceed, as the middle of its bucket, or 0 if nothing has been recorded.
+     */
+    public long percentile(double percentile) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(middleOf(bucket), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts.set(bucket, 0);
+        }
+        maxValue.set(0);
+    }
+
+    // Values below SUB_BUCKETS each get a bucket; above, the top SUB_BUCKET_BITS + 1 bits
+    // pick the bucket within the value's power of two.
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude >= MAX_MAGNITUDE) return BUCKET_COUNT - 1;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * (shift + 1) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    private static long middleOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return lowestValueOf(bucket) + ((1L << shift) >> 1);
+    }
+}
@@ -0,0 +1,54 @@
+package com.azlirynz.advancedkeyboard.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The bytes held by each part of the keyboard, split into heap and mapped file pages.
+ *
+ * Parts report the exact size of the data they hold: arrays, buffers and bitmaps, but not
+ * the few dozen bytes of object headers around them. Mapped bytes are clean file pages the
+ * system can reclaim at will, and only count while resident.
+ */
+public final class MemoryFootprint {
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> sizes = new ArrayList<>();
+    private final List<Boolean> mapped = new ArrayList<>();
+
+    public void add(String name, long bytes, boolean isMapped) {
+        names.add(name);
+        sizes.add(bytes);
+        mapped.add(isMapped);
+    }
+
+    public long heapBytes() {
+        return total(false);
+    }
+
+    public long mappedBytes() {
+        return total(true);
+    }
+
+    private long total(boolean isMapped) {
+        long total = 0;
+        for (int i = 0; i < sizes.size(); i++) {
+            if (mapped.get(i) == isMapped) {
+                total += sizes.get(i);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            sb.append(String.format(Locale.ROOT, "%-28s %12d %s%n",
+                    names.get(i), sizes.get(i), mapped.get(i) ? "mapped" : "heap"));
+        }
+        sb.append(String.format(Locale.ROOT, "%-28s %12d heap, %d mapped%n",
+                "total", heapBytes(), mappedBytes()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,143 @@
+package com.azlirynz.advancedkeyboard.metrics;
+
+import java.util.Locale;
+
+/**
+ * Per-stage latency histograms for the typing path, off until {@link #setEnabled} turns
+ * them on.
+ *
+ * A stage is timed with {@link #begin} and {@link #end}, which also open and close a
+ * {@link Tracer} section on the same thread, or with {@link #now} and {@link #record} when
+ * it starts on one thread and ends on another. While disabled each call is one volatile
+ * read, and {@link #begin} returns 0, which makes the matching {@link #end} do nothing.
+ */
+public final class Metrics {
+    public enum Stage {
+        KEY_DISPATCH("key dispatch"),
+        IPC_COMMIT("ipc commit"),
+        DICTIONARY_LOOKUP("dictionary lookup"),
+        FUZZY_FALLBACK("fuzzy fallback"),
+        GESTURE_DECODE("gesture decode"),
+        KEY_TO_SUGGESTIONS("key to suggestions"),
+        UI_BIND("ui bind"),
+        SERVICE_CREATE("service create"),
+        INPUT_VIEW("input view"),
+        DICTIONARY_LOAD("dictionary load"),
+        EMOJI_LOAD("emoji load");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Marks stages in a platform trace. Sections nest and are closed on the thread that
+     * opened them.
+     */
+    public interface Tracer {
+        void beginSection(String name);
+
+        void endSection();
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    private static volatile boolean enabled;
+    private static volatile Tracer tracer;
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setTracer(Tracer tracer) {
+        Metrics.tracer = tracer;
+    }
+
+    /**
+     * Starts timing {@code stage} on this thread; pass the result to {@link #end}.
+     */
+    public static long begin(Stage stage) {
+        if (!enabled) return 0;
+        Tracer current = tracer;
+        if (current != null) {
+            current.beginSection(stage.label);
+        }
+        return System.nanoTime();
+    }
+
+    public static void end(Stage stage, long start) {
+        if (start == 0) return;
+        histograms[stage.ordinal()].record(System.nanoTime() - start);
+        Tracer current = tracer;
+        if (current != null) {
+            current.endSection();
+        }
+    }
+
+    /**
+     * Returns a start time for {@link #record}, or 0 while disabled.
+     */
+    public static long now() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since {@code start}, taken from {@link #now}, against {@code stage}.
+     */
+    public static void record(Stage stage, long start) {
+        if (start == 0) return;
+        histograms[stage.ordinal()].record(System.nanoTime() - start);
+    }
+
+    public static LatencyHistogram get(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Returns a table of each recorded stage's count and p50, p99, p99.9 and maximum in
+     * milliseconds.
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-20s %8s %9s %9s %9s %9s%n",
+                "stage", "count", "p50", "p99", "p99.9", "max"));
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            if (histogram.count() == 0) continue;
+            sb.append(String.format(Locale.ROOT, "%-20s %8d %9.3f %9.3f %9.3f %9.3f%n",
+                    stage.label, histogram.count(),
+                    millis(histogram.percentile(50)), millis(histogram.percentile(99)),
+                    millis(histogram.percentile(99.9)), millis(histogram.max())));
+        }
+        return sb.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
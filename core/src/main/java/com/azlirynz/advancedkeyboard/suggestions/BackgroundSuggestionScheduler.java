@@ -0,0 +1,134 @@
+package com.azlirynz.advancedkeyboard.suggestions;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.GesturePath;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link SuggestionScheduler} backed by a single worker.
+ *
+ * Requests are tagged with a generation number. Only the newest pending request is
+ * kept, so a burst of keystrokes collapses into one lookup, and the running lookup is
+ * cancelled as soon as a newer generation exists. Results are handed to the delivery
+ * executor and dropped there if they have gone stale in the meantime. A lookup that
+ * throws is logged and delivers nothing, and later requests run as usual.
+ */
+public final class BackgroundSuggestionScheduler implements SuggestionScheduler {
+    private static final Logger LOG = Logger.getLogger(BackgroundSuggestionScheduler.class.getName());
+
+    private final Source source;
+    private final Callback callback;
+    private final ExecutorService worker;
+    private final Executor delivery;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    public BackgroundSuggestionScheduler(Source source, Callback callback,
+                                         ExecutorService worker, Executor delivery) {
+        this.source = source;
+        this.callback = callback;
+        this.worker = worker;
+        this.delivery = delivery;
+    }
+
+    @Override
+    public void request(CharSequence previousWords, CharSequence typedWord) {
+        submit(new Request(generation.incrementAndGet(),
+                previousWords.toString(), typedWord.toString(), null));
+    }
+
+    @Override
+    public void requestGesture(CharSequence previousWords, GesturePath gesture) {
+        submit(new Request(generation.incrementAndGet(), previousWords.toString(), "", gesture));
+    }
+
+    private void submit(Request request) {
+        pending.set(request);
+        if (draining.compareAndSet(false, true)) {
+            worker.execute(drain);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        generation.incrementAndGet();
+        pending.set(null);
+    }
+
+    @Override
+    public void shutdown() {
+        cancel();
+        worker.shutdownNow();
+    }
+
+    private void drain() {
+        while (true) {
+            Request request = pending.getAndSet(null);
+            if (request == null) {
+                draining.set(false);
+                // A request may have slipped in after the swap but before the flag cleared.
+                if (pending.get() == null || !draining.compareAndSet(false, true)) return;
+                continue;
+            }
+            // An exception escaping here would leave draining set and stop all lookups.
+            try {
+                run(request);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Suggestion lookup failed", e);
+            }
+        }
+    }
+
+    private void run(final Request request) {
+        if (request.isStale()) return;
+        final List<String> suggestions = source.getSuggestions(
+                request.previousWords, request.typedWord, request.gesture, request);
+        if (suggestions == null || request.isStale()) return;
+        delivery.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!request.isStale()) {
+                    callback.onSuggestions(suggestions);
+                }
+            }
+        });
+    }
+
+    private final class Request implements Cancellation {
+        final long generation;
+        final String previousWords;
+        final String typedWord;
+        final GesturePath gesture;
+
+        Request(long generation, String previousWords, String typedWord, GesturePath gesture) {
+            this.generation = generation;
+            this.previousWords = previousWords;
+            this.typedWord = typedWord;
+            this.gesture = gesture;
+        }
+
+        boolean isStale() {
+            return generation != BackgroundSuggestionScheduler.this.generation.get();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return isStale();
+        }
+    }
+}
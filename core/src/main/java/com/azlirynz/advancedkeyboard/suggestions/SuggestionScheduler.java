@@ -0,0 +1,39 @@
+package com.azlirynz.advancedkeyboard.suggestions;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.GesturePath;
+
+import java.util.List;
+
+/**
+ * Runs suggestion lookups away from the caller's thread.
+ *
+ * Every {@link #request}, {@link #requestGesture} or {@link #cancel} supersedes all earlier requests: their
+ * lookups are abandoned if still running and their results are never delivered.
+ */
+public interface SuggestionScheduler {
+    interface Source {
+        /**
+         * Looks up {@code typedWord} after the space-separated {@code previousWords}, or
+         * the word traced by {@code gesture} if it is not null.
+         * Returns null if the lookup noticed it was cancelled.
+         */
+        List<String> getSuggestions(CharSequence previousWords, CharSequence typedWord,
+                                    GesturePath gesture, Cancellation cancellation);
+    }
+
+    interface Callback {
+        void onSuggestions(List<String> suggestions);
+    }
+
+    void request(CharSequence previousWords, CharSequence typedWord);
+
+    /**
+     * Looks up the word traced by {@code gesture}, which must not change afterwards.
+     */
+    void requestGesture(CharSequence previousWords, GesturePath gesture);
+
+    void cancel();
+
+    void shutdown();
+}
@@ -0,0 +1,134 @@
+package com.azlirynz.advancedkeyboard.trace;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A recorded typing session: the key codes sent to the keyboard, the suggestions picked
+ * and the points where the editor's text changed under the keyboard, in order.
+ *
+ * Written with {@link #writeTo}, an ASCII key takes one byte, any other key three, a
+ * reset one and a pick its word in modified UTF-8 plus three. Not thread-safe.
+ */
+public final class TypingTrace {
+    public static final int KEY = 0;
+    public static final int PICK = 1;
+    // Another field, or the cursor moved away from the word being typed.
+    public static final int RESET = 2;
+
+    private static final int MAGIC = 0x414b5452; // "AKTR"
+    private static final int VERSION = 1;
+    // Tags of events that are not ASCII keys; a tag below 0x80 is an ASCII key code.
+    private static final int TAG_KEY = 0x80;
+    private static final int TAG_PICK = 0x81;
+    private static final int TAG_RESET = 0x82;
+
+    private int[] types = new int[256];
+    private int[] codes = new int[256];
+    private String[] words = new String[256];
+    private int size;
+
+    public void addKey(int code) {
+        add(KEY, code, null);
+    }
+
+    public void addPick(String word) {
+        add(PICK, 0, word);
+    }
+
+    public void addReset() {
+        add(RESET, 0, null);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getType(int event) {
+        return types[event];
+    }
+
+    /**
+     * Returns the key code of a {@link #KEY} event.
+     */
+    public int getCode(int event) {
+        return codes[event];
+    }
+
+    /**
+     * Returns the word of a {@link #PICK} event.
+     */
+    public String getWord(int event) {
+        return words[event];
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0, size, null);
+        size = 0;
+    }
+
+    private void add(int type, int code, String word) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            codes = Arrays.copyOf(codes, size * 2);
+            words = Arrays.copyOf(words, size * 2);
+        }
+        types[size] = type;
+        codes[size] = code;
+        words[size] = word;
+        size++;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            switch (types[i]) {
+                case KEY:
+                    if (codes[i] >= 0 && codes[i] < TAG_KEY) {
+                        out.writeByte(codes[i]);
+                    } else {
+                        out.writeByte(TAG_KEY);
+                        out.writeShort(codes[i]);
+                    }
+                    break;
+                case PICK:
+                    out.writeByte(TAG_PICK);
+                    out.writeUTF(words[i]);
+                    break;
+                default:
+                    out.writeByte(TAG_RESET);
+            }
+        }
+    }
+
+    /**
+     * Appends the events {@link #writeTo} wrote.
+     */
+    public void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unrecognized typing trace");
+        }
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Bad typing trace size " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            if (tag < TAG_KEY) {
+                addKey(tag);
+            } else if (tag == TAG_KEY) {
+                addKey(in.readShort());
+            } else if (tag == TAG_PICK) {
+                addPick(in.readUTF());
+            } else if (tag == TAG_RESET) {
+                addReset();
+            } else {
+                throw new IOException("Bad typing trace event " + tag);
+            }
+        }
+    }
+}
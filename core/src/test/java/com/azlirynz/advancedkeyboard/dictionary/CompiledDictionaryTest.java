@@ -0,0 +1,115 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A dictionary read from its compiled, memory-mapped form must behave exactly like the
+ * one built from the word list.
+ */
+public class CompiledDictionaryTest {
+    private static final int WORD_COUNT = 5000;
+    private static final int QUERY_COUNT = 500;
+
+    private static WordList words;
+    private static PackedTrie built;
+    private static PackedTrie mapped;
+
+    @BeforeClass
+    public static void compile() throws IOException {
+        words = TestWords.generate(WORD_COUNT, 1);
+        built = PackedTrie.build(words);
+        mapped = PackedTrie.read(TestWords.mapCompiled(built));
+    }
+
+    @Test
+    public void mappedTrieHasTheSameNodes() {
+        assertTrue(mapped.isMapped());
+        assertFalse(built.isMapped());
+        assertEquals(built.nodeCount(), mapped.nodeCount());
+        assertEquals(built.wordCount(), mapped.wordCount());
+        for (int node = 0; node < built.nodeCount(); node++) {
+            assertEquals(built.label(node), mapped.label(node));
+            assertEquals(built.firstChild(node), mapped.firstChild(node));
+            assertEquals(built.childEnd(node), mapped.childEnd(node));
+            assertEquals(built.frequency(node), mapped.frequency(node));
+            assertEquals(built.maxFrequency(node), mapped.maxFrequency(node));
+        }
+    }
+
+    @Test
+    public void mappedTrieContainsEveryWord() {
+        for (int i = 0; i < words.size(); i++) {
+            int node = mapped.find(words.word(i));
+            assertTrue(words.word(i), mapped.isTerminal(node));
+            assertEquals(words.word(i), mapped.wordAt(node));
+        }
+    }
+
+    @Test
+    public void prefixesGetTheSameSuggestions() {
+        Random random = new Random(2);
+        Suggester fromBuilt = suggester(built);
+        Suggester fromMapped = suggester(mapped);
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            String word = words.word(random.nextInt(words.size()));
+            String prefix = word.substring(0, 1 + random.nextInt(word.length()));
+            assertSameSuggestions(fromBuilt, fromMapped, prefix);
+        }
+    }
+
+    @Test
+    public void typosGetTheSameCorrections() {
+        Random random = new Random(3);
+        Suggester fromBuilt = suggester(built);
+        Suggester fromMapped = suggester(mapped);
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            String word = words.word(random.nextInt(words.size()));
+            assertSameSuggestions(fromBuilt, fromMapped, typo(word, random));
+        }
+    }
+
+    private static Suggester suggester(PackedTrie trie) {
+        Suggester suggester = new Suggester();
+        suggester.setLanguageModels(new LanguageModel("test", trie, null), null);
+        return suggester;
+    }
+
+    private static void assertSameSuggestions(Suggester expected, Suggester actual, String typed) {
+        List<String> fromBuilt = expected.getSuggestions(null, "", typed, Cancellation.NONE);
+        List<String> fromMapped = actual.getSuggestions(null, "", typed, Cancellation.NONE);
+        assertEquals(typed, fromBuilt, fromMapped);
+    }
+
+    // One substituted, dropped, doubled or swapped letter.
+    static String typo(String word, Random random) {
+        StringBuilder typo = new StringBuilder(word);
+        int at = random.nextInt(word.length());
+        switch (random.nextInt(4)) {
+            case 0:
+                typo.setCharAt(at, (char) ('a' + random.nextInt(26)));
+                break;
+            case 1:
+                if (word.length() > 1) typo.deleteCharAt(at);
+                break;
+            case 2:
+                typo.insert(at, word.charAt(at));
+                break;
+            default:
+                if (at + 1 < word.length()) {
+                    typo.setCharAt(at, word.charAt(at + 1));
+                    typo.setCharAt(at + 1, word.charAt(at));
+                }
+        }
+        return typo.toString();
+    }
+}
@@ -0,0 +1,111 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Bounds what the per-keystroke path allocates once warmed up, as counted by the JVM for
+ * the current thread.
+ */
+public class KeystrokeAllocationTest {
+    private static final int WARM_UP_WORDS = 20000;
+    private static final int MEASURED_WORDS = 20000;
+    // A lookup returns a new list, and spells out each dictionary's up to 16 candidates
+    // as strings before ranking them; about 2.8 KB per keystroke when this was written.
+    private static final long MAX_LOOKUP_BYTES = 4096;
+
+    private com.sun.management.ThreadMXBean threads;
+    private String[] typed;
+    private final int[] keyCodes = {'q', 'w', 'e'};
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        WordList words = TestWords.generate(2000, 6);
+        Random random = new Random(7);
+        typed = new String[256];
+        for (int i = 0; i < typed.length; i++) {
+            typed[i] = words.word(random.nextInt(words.size()));
+        }
+    }
+
+    @Test
+    public void composerDoesNotAllocatePerKeystroke() {
+        WordComposer composer = new WordComposer();
+        compose(composer, WARM_UP_WORDS);
+
+        long before = allocatedBytes();
+        long keystrokes = compose(composer, MEASURED_WORDS);
+        long allocated = allocatedBytes() - before - measurementOverhead();
+
+        // Less than a byte per keystroke: what is left is the counter's own noise.
+        assertTrue(allocated + " bytes over " + keystrokes + " keystrokes", allocated < keystrokes);
+    }
+
+    @Test
+    public void lookupAllocationIsBoundedPerKeystroke() {
+        Suggester suggester = new Suggester();
+        suggester.setLanguageModels(new LanguageModel("test",
+                PackedTrie.build(TestWords.generate(5000, 8)), null), null);
+        WordComposer composer = new WordComposer();
+        typeAndLookUp(suggester, composer, WARM_UP_WORDS / 10);
+
+        long before = allocatedBytes();
+        long keystrokes = typeAndLookUp(suggester, composer, MEASURED_WORDS / 10);
+        long perKeystroke = (allocatedBytes() - before) / keystrokes;
+
+        assertTrue(perKeystroke + " bytes per keystroke", perKeystroke <= MAX_LOOKUP_BYTES);
+    }
+
+    // Types each word a key at a time, backspacing over its last letter and retyping it.
+    private long compose(WordComposer composer, int wordCount) {
+        long keystrokes = 0;
+        for (int n = 0; n < wordCount; n++) {
+            String word = typed[n % typed.length];
+            composer.reset();
+            for (int i = 0; i < word.length(); i++) {
+                composer.add(word.charAt(i), keyCodes);
+                keystrokes++;
+            }
+            composer.deleteLast();
+            composer.add(word.charAt(word.length() - 1), keyCodes);
+            keystrokes += 2;
+        }
+        return keystrokes;
+    }
+
+    private long typeAndLookUp(Suggester suggester, WordComposer composer, int wordCount) {
+        long keystrokes = 0;
+        for (int n = 0; n < wordCount; n++) {
+            String word = typed[n % typed.length];
+            composer.reset();
+            for (int i = 0; i < word.length(); i++) {
+                composer.add(word.charAt(i), keyCodes);
+                suggester.getSuggestions(null, "", composer.getLowerCaseWord(), Cancellation.NONE);
+                keystrokes++;
+            }
+        }
+        return keystrokes;
+    }
+
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // What reading the counter twice allocates by itself, on some JVMs an array.
+    private long measurementOverhead() {
+        long before = allocatedBytes();
+        return allocatedBytes() - before;
+    }
+}
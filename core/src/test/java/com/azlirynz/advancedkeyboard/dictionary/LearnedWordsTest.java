@@ -0,0 +1,158 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LearnedWordsTest {
+    private static final int DISTINCT_WORDS = 2000;
+    private static final int READERS = 4;
+
+    @Test
+    public void learnedWordIsPublishedAtOnce() {
+        LearnedWords learned = new LearnedWords();
+        learned.learn("foo");
+        learned.learn("foo");
+
+        LearnedWords.Snapshot snapshot = learned.snapshot();
+        int node = snapshot.recent.find("foo");
+        assertTrue(snapshot.recent.isTerminal(node));
+        assertEquals(LearnedWords.frequencyForCount(2), snapshot.recent.frequency(node));
+    }
+
+    @Test
+    public void recentWordsAreMergedIntoBase() {
+        LearnedWords learned = new LearnedWords();
+        for (int i = 0; i < 32; i++) {
+            learned.learn("word" + (char) ('a' + i % 26) + (char) ('a' + i / 26));
+        }
+
+        LearnedWords.Snapshot snapshot = learned.snapshot();
+        assertEquals(0, snapshot.recent.wordCount());
+        assertEquals(32, snapshot.base.wordCount());
+    }
+
+    /**
+     * One writer learns words, each first used in a fixed order and then now and again
+     * repeated, while readers take snapshots and look words up in them. Every snapshot
+     * must hold a prefix of that order, never lose a word or lower a frequency seen in an
+     * earlier snapshot, and never hold 32 recent words, which would mean a merge was seen
+     * half done.
+     */
+    @Test
+    public void readersSeeConsistentSnapshotsWhileLearning() throws Throwable {
+        final List<String> order = new ArrayList<>();
+        WordList words = TestWords.generate(DISTINCT_WORDS, 4);
+        for (int i = 0; i < words.size(); i++) {
+            order.add(words.word(i));
+        }
+        final LearnedWords learned = new LearnedWords();
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            final long seed = r;
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        checkSnapshots(learned, order, writing, seed);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        Map<String, Integer> expected = new HashMap<>();
+        Random random = new Random(5);
+        start.countDown();
+        for (int i = 0; i < order.size(); i++) {
+            learn(learned, order.get(i), expected);
+            if (random.nextInt(3) == 0) {
+                learn(learned, order.get(random.nextInt(i + 1)), expected);
+            }
+        }
+        writing.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (failure.get() != null) throw failure.get();
+
+        Map<String, Integer> published = frequencies(learned.snapshot());
+        assertEquals(expected.size(), published.size());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), LearnedWords.frequencyForCount(entry.getValue()),
+                    (int) published.get(entry.getKey()));
+        }
+    }
+
+    private static void learn(LearnedWords learned, String word, Map<String, Integer> counts) {
+        learned.learn(word);
+        Integer count = counts.get(word);
+        counts.put(word, count != null ? count + 1 : 1);
+    }
+
+    private static void checkSnapshots(LearnedWords learned, List<String> order,
+                                       AtomicBoolean writing, long seed) {
+        Suggester suggester = new Suggester();
+        Random random = new Random(seed);
+        Map<String, Integer> previous = new HashMap<>();
+        boolean last = false;
+        while (!last) {
+            last = !writing.get();
+            LearnedWords.Snapshot snapshot = learned.snapshot();
+            assertTrue(snapshot.recent.wordCount() < 32);
+            Map<String, Integer> current = frequencies(snapshot);
+
+            int known = current.size();
+            for (int i = 0; i < known; i++) {
+                assertTrue("missing " + order.get(i), current.containsKey(order.get(i)));
+            }
+            for (Map.Entry<String, Integer> entry : previous.entrySet()) {
+                Integer frequency = current.get(entry.getKey());
+                assertNotNull("lost " + entry.getKey(), frequency);
+                assertTrue("lowered " + entry.getKey(), frequency >= entry.getValue());
+            }
+            previous = current;
+
+            if (known > 0) {
+                String word = order.get(random.nextInt(known));
+                List<String> suggestions = suggester.getSuggestions(snapshot, "", word, Cancellation.NONE);
+                assertEquals(word, suggestions.get(0));
+            }
+        }
+    }
+
+    // Every word in the snapshot with its frequency, the recent trie's winning ties.
+    private static Map<String, Integer> frequencies(LearnedWords.Snapshot snapshot) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        addWords(snapshot.base, frequencies);
+        addWords(snapshot.recent, frequencies);
+        return frequencies;
+    }
+
+    private static void addWords(PackedTrie trie, Map<String, Integer> frequencies) {
+        for (int node = 0; node < trie.nodeCount(); node++) {
+            if (trie.isTerminal(node)) {
+                frequencies.put(trie.wordAt(node), trie.frequency(node));
+            }
+        }
+    }
+}
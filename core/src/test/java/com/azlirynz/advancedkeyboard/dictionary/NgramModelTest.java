@@ -0,0 +1,165 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+public class NgramModelTest {
+    // round(-ln(3/4) * COST_SCALE) and round(-ln(1/4) * COST_SCALE).
+    private static final int LIKELY_COST = 295;
+    private static final int UNLIKELY_COST = 1420;
+    private static final int BACKOFF_COST = (int) (0.92 * NgramModel.COST_SCALE);
+
+    private static PackedTrie trie;
+    private static String[] words;
+    private static NgramModel model;
+
+    @BeforeClass
+    public static void parse() {
+        WordList list = TestWords.generate(1000, 9);
+        trie = PackedTrie.build(list);
+        // The last word is in no n-gram.
+        words = new String[] {list.word(0), list.word(1), list.word(2), list.word(3), list.word(4)};
+        model = NgramModel.parse(trie, new StringReader(ngrams(words)));
+    }
+
+    @Test
+    public void predictsNextWordsCheapestFirst() {
+        assertPrediction(model, NgramModel.NO_WORD, node(words[0]),
+                new int[] {node(words[1]), node(words[2])}, new int[] {LIKELY_COST, UNLIKELY_COST});
+        // The trigram wins over its bigram, the other bigram pays for backing off.
+        assertPrediction(model, node(words[3]), node(words[0]),
+                new int[] {node(words[2]), node(words[1])}, new int[] {0, LIKELY_COST + BACKOFF_COST});
+    }
+
+    @Test
+    public void costFallsBackFromTrigramToBigram() {
+        assertEquals(0, model.cost(node(words[3]), node(words[0]), node(words[2])));
+        assertEquals(LIKELY_COST + BACKOFF_COST, model.cost(node(words[3]), node(words[0]), node(words[1])));
+        assertEquals(LIKELY_COST, model.cost(NgramModel.NO_WORD, node(words[0]), node(words[1])));
+        assertEquals(-1, model.cost(NgramModel.NO_WORD, node(words[1]), node(words[0])));
+    }
+
+    @Test
+    public void wordsNoNgramUsesAreUnknown() {
+        int unused = node(words[4]);
+        assertEquals(0, model.predict(NgramModel.NO_WORD, unused, 4, new int[4], new int[4]));
+        assertEquals(-1, model.cost(NgramModel.NO_WORD, node(words[0]), unused));
+    }
+
+    @Test
+    public void compiledModelMatchesParsed() throws IOException {
+        NgramModel compiled = NgramModel.read(compile(model), trie);
+        assertEquals(model.bigramCount(), compiled.bigramCount());
+        assertEquals(model.trigramCount(), compiled.trigramCount());
+        assertEquals(model.sizeInBytes(), compiled.sizeInBytes());
+        for (String first : words) {
+            for (String second : words) {
+                assertSamePrediction(model, compiled, node(first), node(second));
+                for (String third : words) {
+                    assertEquals(model.cost(node(first), node(second), node(third)),
+                            compiled.cost(node(first), node(second), node(third)));
+                }
+            }
+            assertSamePrediction(model, compiled, NgramModel.NO_WORD, node(first));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void compiledModelIsTiedToItsDictionary() throws IOException {
+        NgramModel.read(compile(model), PackedTrie.build(TestWords.generate(1000, 10)));
+    }
+
+    /**
+     * Word ids must not depend on the size of the trie: the n-grams here use words ending
+     * past node 2^21, which does not fit the 21 bits a word takes in a key.
+     */
+    @Test
+    public void predictsWordsBeyondTwoMillionNodes() throws IOException {
+        Random random = new Random(11);
+        WordList list = new WordList();
+        for (int i = 0; i < 80000; i++) {
+            char[] letters = new char[32];
+            for (int j = 0; j < letters.length; j++) {
+                letters[j] = (char) ('a' + random.nextInt(26));
+            }
+            list.add(new String(letters), 100);
+        }
+        PackedTrie large = PackedTrie.build(list);
+        assertTrue(large.nodeCount() > 1 << 21);
+        String[] deepest = deepestWords(large, 4);
+        int[] nodes = new int[deepest.length];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = large.find(deepest[i]);
+        }
+        assertTrue(nodes[0] > 1 << 21);
+
+        NgramModel parsed = NgramModel.parse(large, new StringReader(ngrams(deepest)));
+        NgramModel compiled = NgramModel.read(compile(parsed), large);
+        for (NgramModel candidate : new NgramModel[] {parsed, compiled}) {
+            assertPrediction(candidate, NgramModel.NO_WORD, nodes[0],
+                    new int[] {nodes[1], nodes[2]}, new int[] {LIKELY_COST, UNLIKELY_COST});
+            assertPrediction(candidate, nodes[3], nodes[0],
+                    new int[] {nodes[2], nodes[1]}, new int[] {0, LIKELY_COST + BACKOFF_COST});
+        }
+    }
+
+    // Bigrams "0 1" and "0 2", three to one, and the trigram "3 0 2".
+    private static String ngrams(String[] words) {
+        return "[{\"words\": \"" + words[0] + " " + words[1] + "\", \"count\": 3},"
+                + "{\"words\": \"" + words[0] + " " + words[2] + "\", \"count\": 1},"
+                + "{\"words\": \"" + words[3] + " " + words[0] + " " + words[2] + "\", \"count\": 2},"
+                + "{\"words\": \"" + words[0] + " unknownword\", \"count\": 5}]";
+    }
+
+    private static int node(String word) {
+        return trie.find(word);
+    }
+
+    // The words ending at the highest-numbered terminal nodes, highest last.
+    private static String[] deepestWords(PackedTrie trie, int count) {
+        String[] found = new String[count];
+        int node = trie.nodeCount() - 1;
+        for (int i = count - 1; i >= 0; node--) {
+            if (trie.isTerminal(node)) {
+                found[i--] = trie.wordAt(node);
+            }
+        }
+        return found;
+    }
+
+    private static ByteBuffer compile(NgramModel model) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        model.writeTo(Channels.newChannel(out));
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private static void assertPrediction(NgramModel model, int previous2, int previous1,
+                                         int[] expectedWords, int[] expectedCosts) {
+        int[] outWords = new int[8];
+        int[] outCosts = new int[8];
+        int count = model.predict(previous2, previous1, outWords.length, outWords, outCosts);
+        assertArrayEquals(expectedWords, Arrays.copyOf(outWords, count));
+        assertArrayEquals(expectedCosts, Arrays.copyOf(outCosts, count));
+    }
+
+    private static void assertSamePrediction(NgramModel expected, NgramModel actual,
+                                             int previous2, int previous1) {
+        int[] expectedWords = new int[8];
+        int[] expectedCosts = new int[8];
+        int count = expected.predict(previous2, previous1, 8, expectedWords, expectedCosts);
+        assertPrediction(actual, previous2, previous1,
+                Arrays.copyOf(expectedWords, count), Arrays.copyOf(expectedCosts, count));
+    }
+}
@@ -0,0 +1,75 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The packed trie against the node-object trie it replaced, built from the same words.
+ */
+public class PackedTrieTest {
+    private static final int WORD_COUNT = 10000;
+    private static final int K = 8;
+    // Was about 24 times smaller when this was written.
+    private static final int MIN_SIZE_RATIO = 10;
+
+    private static WordList words;
+    private static NodeTrie nodeTrie;
+    private static PackedTrie packed;
+
+    @BeforeClass
+    public static void build() {
+        words = TestWords.generate(WORD_COUNT, 12);
+        nodeTrie = NodeTrie.build(words);
+        packed = PackedTrie.build(words);
+    }
+
+    @Test
+    public void hasTheSameNodes() {
+        assertEquals(nodeTrie.nodeCount(), packed.nodeCount());
+        assertEquals(words.size(), packed.wordCount());
+    }
+
+    /**
+     * Words of equal frequency may come in either order, so the completions must be
+     * distinct words of the prefix with the same frequencies rank by rank.
+     */
+    @Test
+    public void completesPrefixesWithTheSameTopWords() {
+        Random random = new Random(13);
+        CompletionSearch search = new CompletionSearch();
+        int[] nodes = new int[K];
+        for (int i = 0; i < 200; i++) {
+            String word = words.word(random.nextInt(words.size()));
+            String prefix = word.substring(0, 1 + random.nextInt(Math.min(3, word.length())));
+
+            List<String> expected = nodeTrie.topK(prefix, K);
+            int count = search.topK(packed, packed.find(prefix), K, nodes);
+            assertEquals(prefix, expected.size(), count);
+            List<String> completions = new ArrayList<>();
+            for (int j = 0; j < count; j++) {
+                String completion = packed.wordAt(nodes[j]);
+                assertTrue(completion, completion.startsWith(prefix));
+                assertFalse(completion, completions.contains(completion));
+                completions.add(completion);
+                assertEquals(prefix + " #" + j, nodeTrie.frequency(expected.get(j)), packed.frequency(nodes[j]));
+                assertEquals(completion, nodeTrie.frequency(completion), packed.frequency(nodes[j]));
+            }
+        }
+    }
+
+    @Test
+    public void isFarSmallerThanTheNodeTrie() {
+        long nodeTrieBytes = GraphLayout.parseInstance(nodeTrie).totalSize();
+        assertTrue(packed.sizeInBytes() + " packed bytes against " + nodeTrieBytes,
+                packed.sizeInBytes() * MIN_SIZE_RATIO < nodeTrieBytes);
+    }
+}
@@ -0,0 +1,73 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SuggesterTest {
+    private WordList words;
+    private PackedTrie trie;
+    private Suggester suggester;
+
+    @Before
+    public void setUp() {
+        words = TestWords.generate(1000, 14);
+        trie = PackedTrie.build(words);
+        // The two most frequent words predicted after the third.
+        NgramModel ngrams = NgramModel.parse(trie, new StringReader(
+                "[{\"words\": \"" + word(2) + " " + word(1) + "\", \"count\": 3},"
+                        + "{\"words\": \"" + word(2) + " " + word(0) + "\", \"count\": 1}]"));
+        suggester = new Suggester();
+        suggester.setLanguageModels(new LanguageModel("test", trie, ngrams), null);
+    }
+
+    @Test
+    public void predictsAfterAKnownContext() {
+        assertEquals(Arrays.asList(word(1), word(0)), suggest(word(2), ""));
+        assertEquals(Arrays.asList(word(1), word(0)), suggest(word(5) + " " + word(2), ""));
+    }
+
+    @Test
+    public void predictsNothingWithoutContext() {
+        assertEquals(Collections.emptyList(), suggest("", ""));
+    }
+
+    @Test
+    public void predictsNothingAfterAnUnknownWord() {
+        assertEquals(Collections.emptyList(), suggest("qqqq", ""));
+    }
+
+    @Test
+    public void predictsNothingAfterAWordNoNgramFollows() {
+        assertEquals(Collections.emptyList(), suggest(word(1), ""));
+    }
+
+    @Test
+    public void predictsNothingWithoutAnNgramModel() {
+        suggester.setLanguageModels(new LanguageModel("test", trie, null), null);
+        assertEquals(Collections.emptyList(), suggest(word(2), ""));
+    }
+
+    @Test
+    public void typedWordIsStillCompletedAfterAnEmptyLookup() {
+        suggest("qqqq", "");
+        String word = word(0);
+        List<String> suggestions = suggest("", word.substring(0, 1));
+        assertTrue(suggestions.toString(), suggestions.contains(word));
+    }
+
+    private String word(int rank) {
+        return words.word(rank);
+    }
+
+    private List<String> suggest(String previousWords, String typedWord) {
+        return suggester.getSuggestions(null, previousWords, typedWord, Cancellation.NONE);
+    }
+}
@@ -0,0 +1,69 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Word lists generated from a seed, so tests need no checked-in dictionary.
+ */
+final class TestWords {
+    private static final String[] ONSETS = {
+            "", "b", "bl", "br", "c", "ch", "cl", "d", "f", "fr", "g", "h", "j", "k", "l", "m",
+            "n", "p", "pr", "r", "s", "sh", "st", "t", "th", "tr", "v", "w", "y", "z"
+    };
+    private static final String[] NUCLEI = {"a", "e", "i", "o", "u", "ai", "ea", "ee", "oo", "ou"};
+    private static final String[] CODAS = {"", "", "n", "r", "s", "t", "ck", "ll", "nd", "ng", "st"};
+
+    private TestWords() {
+    }
+
+    /**
+     * {@code count} distinct pronounceable words of one to three syllables, in rank order
+     * with frequencies derived from their rank.
+     */
+    static WordList generate(int count, long seed) {
+        Random random = new Random(seed);
+        Set<String> seen = new HashSet<>();
+        String[] words = new String[count];
+        int size = 0;
+        while (size < count) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(3);
+            for (int i = 0; i < syllables; i++) {
+                word.append(ONSETS[random.nextInt(ONSETS.length)])
+                        .append(NUCLEI[random.nextInt(NUCLEI.length)])
+                        .append(CODAS[random.nextInt(CODAS.length)]);
+            }
+            if (seen.add(word.toString())) {
+                words[size++] = word.toString();
+            }
+        }
+        WordList list = new WordList();
+        for (int i = 0; i < count; i++) {
+            list.add(words[i], WordList.frequencyForRank(i, count));
+        }
+        return list;
+    }
+
+    /**
+     * Writes {@code trie} to a temporary file and maps it, as the app maps a compiled
+     * dictionary out of the APK.
+     */
+    static ByteBuffer mapCompiled(PackedTrie trie) throws IOException {
+        File file = File.createTempFile("words", ".dict");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            trie.writeTo(out.getChannel());
+        }
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class WordListTest {
+    @Test
+    public void plainStringsAreRankedByPosition() {
+        WordList words = WordList.parse(new StringReader("[\"the\", \"of\", \"and\"]"));
+
+        assertEquals(3, words.size());
+        assertEquals("the", words.word(0));
+        assertEquals(WordList.MAX_FREQUENCY, words.frequency(0));
+        assertEquals(1, words.frequency(2));
+    }
+
+    @Test
+    public void objectsKeepTheirFrequencies() {
+        WordList words = WordList.parse(new StringReader(
+                "[{\"word\": \"Hello\", \"frequency\": 300}, {\"word\": \"world\", \"frequency\": 0}]"));
+
+        assertEquals("hello", words.word(0));
+        assertEquals(WordList.MAX_FREQUENCY, words.frequency(0));
+        assertEquals(1, words.frequency(1));
+    }
+
+    @Test
+    public void blankEntriesAreDropped() {
+        WordList words = WordList.parse(new StringReader("[\"a\", \"  \", \"b\"]"));
+
+        assertEquals(2, words.size());
+        assertEquals("b", words.word(1));
+    }
+
+    @Test
+    public void readerRanksTheHeadAsIfItWereTheWholeList() throws IOException {
+        WordListReader reader = new WordListReader(new StringReader("[\"a\", \"b\", \"c\", \"d\"]"));
+
+        assertEquals(true, reader.readMore(2));
+        WordList head = reader.toWordList();
+        assertEquals(2, head.size());
+        assertEquals(1, head.frequency(1));
+
+        assertEquals(false, reader.readMore(10));
+        assertEquals(4, reader.toWordList().size());
+    }
+}
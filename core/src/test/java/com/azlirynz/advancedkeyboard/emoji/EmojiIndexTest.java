@@ -0,0 +1,98 @@
+package com.azlirynz.advancedkeyboard.emoji;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class EmojiIndexTest {
+    private static final String EMOJI_JSON = "[{\"name\": \"Test\", \"emojis\": ["
+            + "{\"emoji\": \"0\", \"name\": \"Card Index\", \"keywords\": [\"Catalog\"]},"
+            + "{\"emoji\": \"1\", \"name\": \"Grinning Face\", \"keywords\": [\"Smile\", \"HAPPY\"],"
+            + " \"shortcodes\": [\":grinning:\"]},"
+            + "{\"emoji\": \"2\", \"name\": \"Grinning Face With Smiling Eyes\", \"keywords\": [\"smile\"],"
+            + " \"shortcodes\": [\"smile\"]},"
+            + "{\"emoji\": \"3\", \"name\": \"Grinning Cat\", \"keywords\": [\"cat\", \"smile\"],"
+            + " \"shortcodes\": [\"smiley_cat\"]},"
+            + "{\"emoji\": \"4\", \"name\": \"Cat Face\", \"keywords\": [\"pet\"], \"shortcodes\": [\"cat\"]},"
+            + "\"5\""
+            + "]}]";
+
+    private static EmojiIndex index;
+
+    @BeforeClass
+    public static void buildIndex() throws IOException {
+        index = EmojiIndex.build(EmojiList.flatten(EmojiList.parse(new StringReader(EMOJI_JSON))));
+    }
+
+    @Test
+    public void exactMatchesRankBeforePrefixMatches() {
+        // "catalog" only starts with the query, and comes first in the data.
+        assertEquals(Arrays.asList(3, 4, 0), search("cat"));
+        assertEquals(Arrays.asList(1, 2, 3), search("smil"));
+    }
+
+    @Test
+    public void emojiIsFoundOnceByItsBestTerm() {
+        // Emoji 2 has both "smile" and "smiling"; it stays with the exact matches.
+        assertEquals(Arrays.asList(1, 2, 3), search("smile"));
+    }
+
+    @Test
+    public void resultsAreLimited() {
+        assertEquals(Arrays.asList(3, 4), search("cat", 2));
+    }
+
+    @Test
+    public void shortcodesNeedALeadingColon() {
+        assertEquals(Collections.emptyList(), search("smiley"));
+        assertEquals(Collections.emptyList(), search("grinning_"));
+        assertEquals(Collections.singletonList(3), search(":smiley"));
+        // Name words and keywords are not found as shortcodes.
+        assertEquals(Collections.singletonList(4), search(":cat"));
+        assertEquals(Collections.emptyList(), search(":happy"));
+    }
+
+    @Test
+    public void trailingColonAsksForExactShortcode() {
+        assertEquals(Arrays.asList(2, 3), search(":smile"));
+        assertEquals(Collections.singletonList(2), search(":smile:"));
+        assertEquals(Collections.emptyList(), search(":smi:"));
+        // Shortcodes written with colons in the data are stored without them.
+        assertEquals(Collections.singletonList(1), search(":grinning:"));
+    }
+
+    @Test
+    public void keywordsAndNamesMatchWhateverTheirCase() {
+        assertEquals(Collections.singletonList(1), search("happy"));
+        assertEquals(Collections.singletonList(0), search("card"));
+        assertEquals(Arrays.asList(1, 2, 3), search("grinning"));
+    }
+
+    @Test
+    public void emptyQueryFindsNothing() {
+        assertEquals(Collections.emptyList(), search(""));
+        assertEquals(Collections.emptyList(), search("::"));
+    }
+
+    private static List<Integer> search(String query) {
+        return search(query, 8);
+    }
+
+    private static List<Integer> search(String query, int limit) {
+        int[] found = new int[limit];
+        int count = index.search(query, limit, found);
+        List<Integer> emojis = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            emojis.add(found[i]);
+        }
+        return emojis;
+    }
+}
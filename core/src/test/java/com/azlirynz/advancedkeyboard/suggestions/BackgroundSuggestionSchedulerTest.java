@@ -0,0 +1,212 @@
+package com.azlirynz.advancedkeyboard.suggestions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.azlirynz.advancedkeyboard.dictionary.Cancellation;
+import com.azlirynz.advancedkeyboard.dictionary.GesturePath;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the scheduler on executors that run everything at once, or when told to, so the
+ * order of lookups and deliveries is fixed.
+ */
+public class BackgroundSuggestionSchedulerTest {
+    private final List<String> lookedUp = new ArrayList<>();
+    private final List<List<String>> delivered = new ArrayList<>();
+    private final List<Runnable> queuedDeliveries = new ArrayList<>();
+    private BackgroundSuggestionScheduler scheduler;
+    // Called at the start of each lookup, to act while it is running.
+    private Lookup duringLookup;
+    private boolean lookupSawCancellation;
+
+    private interface Lookup {
+        void run(String typedWord);
+    }
+
+    @Before
+    public void setUp() {
+        duringLookup = new Lookup() {
+            @Override
+            public void run(String typedWord) {
+            }
+        };
+        scheduler = newScheduler(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    private BackgroundSuggestionScheduler newScheduler(Executor delivery) {
+        SuggestionScheduler.Source source = new SuggestionScheduler.Source() {
+            @Override
+            public List<String> getSuggestions(CharSequence previousWords, CharSequence typedWord,
+                                               GesturePath gesture, Cancellation cancellation) {
+                String word = typedWord.toString();
+                lookedUp.add(word);
+                duringLookup.run(word);
+                if (cancellation.isCancelled()) {
+                    lookupSawCancellation = true;
+                }
+                return Arrays.asList(previousWords + "|" + word);
+            }
+        };
+        SuggestionScheduler.Callback callback = new SuggestionScheduler.Callback() {
+            @Override
+            public void onSuggestions(List<String> suggestions) {
+                delivered.add(suggestions);
+            }
+        };
+        return new BackgroundSuggestionScheduler(source, callback, new DirectExecutorService(), delivery);
+    }
+
+    @Test
+    public void deliversEachRequestInOrder() {
+        scheduler.request("", "a");
+        scheduler.request("", "ab");
+        scheduler.request("the", "");
+
+        assertEquals(Arrays.asList("a", "ab", ""), lookedUp);
+        assertEquals(Arrays.asList(
+                Collections.singletonList("|a"),
+                Collections.singletonList("|ab"),
+                Collections.singletonList("the|")), delivered);
+    }
+
+    @Test
+    public void newerRequestCancelsRunningLookupAndDropsItsResult() {
+        duringLookup = new Lookup() {
+            @Override
+            public void run(String typedWord) {
+                if (typedWord.equals("a")) {
+                    scheduler.request("", "ab");
+                }
+            }
+        };
+
+        scheduler.request("", "a");
+
+        assertTrue(lookupSawCancellation);
+        assertEquals(Arrays.asList("a", "ab"), lookedUp);
+        assertEquals(Collections.singletonList(Collections.singletonList("|ab")), delivered);
+    }
+
+    @Test
+    public void burstCollapsesIntoNewestRequest() {
+        duringLookup = new Lookup() {
+            @Override
+            public void run(String typedWord) {
+                if (typedWord.equals("a")) {
+                    scheduler.request("", "ab");
+                    scheduler.request("", "abc");
+                    scheduler.request("", "abcd");
+                }
+            }
+        };
+
+        scheduler.request("", "a");
+
+        assertEquals(Arrays.asList("a", "abcd"), lookedUp);
+        assertEquals(Collections.singletonList(Collections.singletonList("|abcd")), delivered);
+    }
+
+    @Test
+    public void resultGoneStaleBeforeDeliveryIsDropped() {
+        scheduler = newScheduler(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queuedDeliveries.add(command);
+            }
+        });
+
+        scheduler.request("", "a");
+        scheduler.request("", "ab");
+        for (Runnable delivery : queuedDeliveries) {
+            delivery.run();
+        }
+
+        assertEquals(Arrays.asList("a", "ab"), lookedUp);
+        assertEquals(Collections.singletonList(Collections.singletonList("|ab")), delivered);
+    }
+
+    @Test
+    public void cancelDropsPendingDelivery() {
+        scheduler = newScheduler(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queuedDeliveries.add(command);
+            }
+        });
+
+        scheduler.request("", "a");
+        scheduler.cancel();
+        queuedDeliveries.get(0).run();
+
+        assertEquals(Collections.emptyList(), delivered);
+    }
+
+    @Test
+    public void failedLookupDoesNotStopLaterOnes() {
+        duringLookup = new Lookup() {
+            @Override
+            public void run(String typedWord) {
+                if (typedWord.equals("a")) {
+                    throw new IllegalStateException("lookup failed");
+                }
+            }
+        };
+
+        scheduler.request("", "a");
+        scheduler.request("", "ab");
+
+        assertEquals(Arrays.asList("a", "ab"), lookedUp);
+        assertEquals(Collections.singletonList(Collections.singletonList("|ab")), delivered);
+    }
+
+    private static final class DirectExecutorService extends AbstractExecutorService {
+        private boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The trie the dictionary was first built on, one object per node with a map of boxed
+ * characters to children, kept to compare {@link PackedTrie} against. Each word node also
+ * holds its frequency, so completions can be listed the slow way.
+ */
+public final class NodeTrie {
+    private final Map<Character, NodeTrie> children = new HashMap<>();
+    private boolean endOfWord;
+    private int frequency;
+
+    public static NodeTrie build(WordList words) {
+        NodeTrie root = new NodeTrie();
+        for (int i = 0; i < words.size(); i++) {
+            NodeTrie current = root;
+            for (char c : words.word(i).toCharArray()) {
+                NodeTrie child = current.children.get(c);
+                if (child == null) {
+                    child = new NodeTrie();
+                    current.children.put(c, child);
+                }
+                current = child;
+            }
+            current.endOfWord = true;
+            current.frequency = Math.max(current.frequency, words.frequency(i));
+        }
+        return root;
+    }
+
+    public int nodeCount() {
+        int count = 1;
+        for (NodeTrie child : children.values()) {
+            count += child.nodeCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the frequency of {@code word}, or -1 if it is not in the trie.
+     */
+    public int frequency(String word) {
+        NodeTrie node = find(word);
+        return node != null && node.endOfWord ? node.frequency : -1;
+    }
+
+    /**
+     * Returns up to {@code k} words starting with {@code prefix}, most frequent first, by
+     * visiting every word below it. Ties are in no particular order.
+     */
+    public List<String> topK(String prefix, int k) {
+        List<String> words = new ArrayList<>();
+        NodeTrie node = find(prefix);
+        if (node != null) {
+            node.collect(new StringBuilder(prefix), words);
+        }
+        Collections.sort(words, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Integer.compare(frequency(b), frequency(a));
+            }
+        });
+        return words.subList(0, Math.min(k, words.size()));
+    }
+
+    private NodeTrie find(String prefix) {
+        NodeTrie current = this;
+        for (int i = 0; i < prefix.length() && current != null; i++) {
+            current = current.children.get(prefix.charAt(i));
+        }
+        return current;
+    }
+
+    private void collect(StringBuilder word, List<String> words) {
+        if (endOfWord) {
+            words.add(word.toString());
+        }
+        for (Map.Entry<Character, NodeTrie> entry : children.entrySet()) {
+            word.append(entry.getKey());
+            entry.getValue().collect(word, words);
+            word.setLength(word.length() - 1);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.azlirynz.advancedkeyboard.dictionary;
+
+import java.util.Random;
+
+/**
+ * A QWERTY letter layout and gestures traced over it.
+ *
+ * A gesture runs in straight lines between points scattered around the centres of the
+ * word's keys, reported every few pixels as a touch screen would, so decoding has to cope
+ * with the path missing keys by a fraction of their size.
+ */
+public final class SyntheticGestures {
+    public static final int KEY_WIDTH = 100;
+    public static final int KEY_HEIGHT = 150;
+    // Spread of the traced point around a key centre, as a fraction of the key size.
+    public static final float NOISE = 0.2f;
+
+    private static final String[] ROWS = {"qwertyuiop", "asdfghjkl", "zxcvbnm"};
+    private static final float[] ROW_OFFSETS = {0, 0.5f, 1.5f};
+    private static final int TOUCH_SPACING = 15;
+
+    private SyntheticGestures() {
+    }
+
+    public static GestureDecoder decoder() {
+        int[][] keys = keys();
+        return GestureDecoder.fromKeys(keys[0], keys[1], keys[2], keys[3], keys[4]);
+    }
+
+    public static KeyProximity keyProximity() {
+        int[][] keys = keys();
+        return KeyProximity.fromKeys(keys[0], keys[1], keys[2], keys[3], keys[4]);
+    }
+
+    /**
+     * A letter whose key touches the key of {@code c}, picked at random.
+     */
+    public static char neighbour(char c, Random random) {
+        StringBuilder neighbours = new StringBuilder();
+        for (String row : ROWS) {
+            for (int i = 0; i < row.length(); i++) {
+                char other = row.charAt(i);
+                float dx = (centreX(other) - centreX(c)) / KEY_WIDTH;
+                float dy = (centreY(other) - centreY(c)) / KEY_HEIGHT;
+                if (other != c && dx * dx + dy * dy <= 1.5f) {
+                    neighbours.append(other);
+                }
+            }
+        }
+        return neighbours.charAt(random.nextInt(neighbours.length()));
+    }
+
+    // Codes, x, y, width and height of the letter keys.
+    private static int[][] keys() {
+        int[] codes = new int[26];
+        int[] x = new int[26];
+        int[] y = new int[26];
+        int[] width = new int[26];
+        int[] height = new int[26];
+        int key = 0;
+        for (int row = 0; row < ROWS.length; row++) {
+            for (int i = 0; i < ROWS[row].length(); i++) {
+                codes[key] = ROWS[row].charAt(i);
+                x[key] = Math.round((ROW_OFFSETS[row] + i) * KEY_WIDTH);
+                y[key] = row * KEY_HEIGHT;
+                width[key] = KEY_WIDTH;
+                height[key] = KEY_HEIGHT;
+                key++;
+            }
+        }
+        return new int[][] {codes, x, y, width, height};
+    }
+
+    /**
+     * {@code count} gestures for words of two or more letters drawn from the
+     * {@code range} most frequent.
+     */
+    public static GesturePath[] trace(WordList words, int range, int count, long seed) {
+        Random random = new Random(seed);
+        GesturePath[] paths = new GesturePath[count];
+        int traced = 0;
+        while (traced < paths.length) {
+            String word = words.word(random.nextInt(Math.min(range, words.size())));
+            if (word.length() >= 2) {
+                paths[traced++] = trace(word, random);
+            }
+        }
+        return paths;
+    }
+
+    public static GesturePath trace(String word, Random random) {
+        return trace(word, NOISE, random);
+    }
+
+    /**
+     * A gesture for {@code word} whose points scatter by {@code noise} of a key around the
+     * key centres; with no noise it runs through the centres exactly.
+     */
+    public static GesturePath trace(String word, float noise, Random random) {
+        GesturePath path = new GesturePath();
+        float x = scatter(centreX(word.charAt(0)), KEY_WIDTH, noise, random);
+        float y = scatter(centreY(word.charAt(0)), KEY_HEIGHT, noise, random);
+        path.add(x, y);
+        for (int i = 1; i < word.length(); i++) {
+            float toX = scatter(centreX(word.charAt(i)), KEY_WIDTH, noise, random);
+            float toY = scatter(centreY(word.charAt(i)), KEY_HEIGHT, noise, random);
+            float length = (float) Math.hypot(toX - x, toY - y);
+            int steps = Math.max(1, (int) (length / TOUCH_SPACING));
+            for (int step = 1; step <= steps; step++) {
+                path.add(x + (toX - x) * step / steps, y + (toY - y) * step / steps);
+            }
+            x = toX;
+            y = toY;
+        }
+        return path;
+    }
+
+    private static float scatter(float centre, int size, float noise, Random random) {
+        return centre + (float) random.nextGaussian() * noise * size;
+    }
+
+    private static float centreX(char c) {
+        for (int row = 0; row < ROWS.length; row++) {
+            int i = ROWS[row].indexOf(c);
+            if (i >= 0) return (ROW_OFFSETS[row] + i + 0.5f) * KEY_WIDTH;
+        }
+        throw new IllegalArgumentException("No key for " + c);
+    }
+
+    private static float centreY(char c) {
+        for (int row = 0; row < ROWS.length; row++) {
+            if (ROWS[row].indexOf(c) >= 0) return (row + 0.5f) * KEY_HEIGHT;
+        }
+        throw new IllegalArgumentException("No key for " + c);
+    }
+}